@@ -1,5 +1,6 @@
 plugins {
     alias(libs.plugins.android.application)
+    alias(libs.plugins.androidx.baselineprofile)
 }
 
 android {
@@ -14,6 +15,12 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Trace sections for Perfetto in any build type: ./gradlew assembleRelease -Pcalculator.traceSections=true
+        buildConfigField(
+            "boolean", "TRACE_SECTIONS",
+            providers.gradleProperty("calculator.traceSections").getOrElse("false")
+        )
     }
 
     buildTypes {
@@ -24,6 +31,15 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // Release code signed with the debug key, for the macrobenchmarks in :macrobenchmark
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
+    }
+    buildFeatures {
+        buildConfig = true
     }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
@@ -33,10 +49,15 @@ android {
 
 dependencies {
 
+    implementation(project(":engine"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    implementation(libs.recyclerview)
+    implementation(libs.profileinstaller)
+    implementation(libs.tracing)
+    baselineProfile(project(":baselineprofile"))
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
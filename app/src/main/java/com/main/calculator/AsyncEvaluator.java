@@ -0,0 +1,132 @@
+package com.main.calculator;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.main.calculator.engine.Deadline;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs evaluations on a dedicated background thread so a huge expression
+ * cannot block input on the main thread.
+ *
+ * <p>Every submission and every {@link #cancel} bumps a generation counter
+ * and interrupts the evaluation still running, which the engine notices at
+ * its next deadline check. A result is posted back to the main thread only
+ * if its generation is still the latest, so a stale evaluation can never
+ * overwrite the display. Each evaluation also gets a {@link Deadline}; one
+ * that runs past it fails with an {@code EvaluationTimeoutException}.
+ *
+ * <p>All methods must be called on the main thread, and the tasks are the
+ * only code that may touch the engine they use.
+ */
+final class AsyncEvaluator {
+
+    /**
+     * An evaluation to run on the background thread.
+     *
+     * @param <T> The type of the result.
+     */
+    interface Task<T> {
+
+        /**
+         * Evaluates.
+         *
+         * @param deadline The deadline to pass to the engine.
+         * @return The result.
+         */
+        T run(Deadline deadline);
+    }
+
+    /**
+     * Receives the outcome of a task on the main thread, if it is still current.
+     *
+     * @param <T> The type of the result.
+     */
+    interface Callback<T> {
+
+        /**
+         * Called with the result of the task.
+         *
+         * @param result The result.
+         */
+        void onResult(T result);
+
+        /**
+         * Called if the task threw, including when it timed out.
+         *
+         * @param error What the task threw.
+         */
+        void onError(RuntimeException error);
+    }
+
+    private final long timeoutMillis;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "calculator-evaluation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Handler mainThread = new Handler(Looper.getMainLooper());
+    private long generation;  // Latest submission; only touched on the main thread
+    private Future<?> running; // Latest task, for interrupting it
+
+    /**
+     * Creates an evaluator with its own background thread.
+     *
+     * @param timeoutMillis How long each evaluation may take.
+     */
+    AsyncEvaluator(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Runs a task in the background, cancelling any task still running.
+     *
+     * @param task     The evaluation.
+     * @param callback Receives the outcome on the main thread, unless another
+     *                 task is submitted or {@link #cancel} is called first.
+     * @param <T>      The type of the result.
+     */
+    <T> void submit(Task<T> task, Callback<T> callback) {
+        cancel();
+        long submitted = generation;
+        running = executor.submit(() -> {
+            try {
+                T result = task.run(Deadline.after(timeoutMillis, TimeUnit.MILLISECONDS));
+                mainThread.post(() -> {
+                    if (submitted == generation) callback.onResult(result);
+                });
+            } catch (CancellationException e) {
+                // Superseded; nothing to report
+            } catch (RuntimeException e) {
+                mainThread.post(() -> {
+                    if (submitted == generation) callback.onError(e);
+                });
+            }
+        });
+    }
+
+    /**
+     * Discards the result of the pending task, if any, and interrupts it.
+     */
+    void cancel() {
+        generation++;
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    /**
+     * Cancels the pending task and stops the background thread.
+     */
+    void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
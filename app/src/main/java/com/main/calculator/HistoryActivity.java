@@ -0,0 +1,68 @@
+package com.main.calculator;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.view.View;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.main.calculator.history.HistoryLog;
+import com.main.calculator.history.RecentHistory;
+
+import java.io.File;
+
+/**
+ * Lists the calculation history, scrolled to the most recent entry.
+ */
+public class HistoryActivity extends AppCompatActivity {
+
+    private static final String HISTORY_FILE = "history.log"; // In the app's files directory
+    private static final String INDEX_DIRECTORY = "history.idx"; // Search index, kept next to it
+    private static final int RECENT_CAPACITY = 1024;          // Calculations kept in memory
+
+    private static HistoryLog historyLog;     // One per process, shared by every activity
+    private static final RecentHistory recentHistory = new RecentHistory(RECENT_CAPACITY); // Main thread only
+
+    /**
+     * Returns the process-wide history log, opening it on first use. It is
+     * never closed: every append is written and indexed in the background
+     * as it happens.
+     *
+     * @param context Any context of the app.
+     * @return The history log.
+     */
+    static HistoryLog historyLog(Context context) {
+        synchronized (HistoryActivity.class) {
+            if (historyLog == null) {
+                File files = context.getApplicationContext().getFilesDir();
+                historyLog = new HistoryLog(new File(files, HISTORY_FILE), new File(files, INDEX_DIRECTORY));
+            }
+            return historyLog;
+        }
+    }
+
+    /**
+     * Returns the calculations of this process still held in memory, which
+     * are also the latest entries of the history log. Main thread only.
+     */
+    static RecentHistory recentHistory() {
+        return recentHistory;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_history);
+
+        RecyclerView list = findViewById(R.id.history_list);
+        View empty = findViewById(R.id.history_empty);
+        LinearLayoutManager layout = new LinearLayoutManager(this);
+        layout.setStackFromEnd(true);         // Open at the latest calculation
+        list.setLayoutManager(layout);
+        list.setHasFixedSize(true);
+        HistoryAdapter adapter = new HistoryAdapter(historyLog(this), recentHistory);
+        list.setAdapter(adapter);
+        adapter.load(() -> empty.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE));
+    }
+}
@@ -0,0 +1,146 @@
+package com.main.calculator;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.main.calculator.engine.DisplayFormat;
+import com.main.calculator.history.HistoryEntry;
+import com.main.calculator.history.HistoryLog;
+import com.main.calculator.history.RecentHistory;
+
+import java.math.MathContext;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shows the entries of a {@link HistoryLog}, oldest first, reading them
+ * from the file a page at a time as rows scroll into view. Only the most
+ * recently used pages are kept, so memory stays the same however long the
+ * history is. The latest rows, where the list opens, come from the
+ * {@link RecentHistory} held in memory instead.
+ */
+final class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.RowHolder> {
+
+    static final int PAGE_SIZE = 100;            // Entries read together
+    private static final MathContext PRECISION = MathContext.DECIMAL64; // As MainAppII shows results
+    private static final int MAX_PAGES = 8;      // Pages kept; a screen spans at most two
+    private static final int PREFETCH = PAGE_SIZE / 4; // Rows from a page edge that load its neighbour
+
+    private final HistoryLog log;
+    private final RecentHistory recent;
+    private long recentOffset;                            // Number in recent of row 0
+    private final Handler main = new Handler(Looper.getMainLooper()); // Pages arrive on the log's thread
+    private final Map<Integer, List<HistoryEntry>> pages = new LinkedHashMap<Integer, List<HistoryEntry>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<HistoryEntry>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>(); // Pages requested but not yet read
+    private int total;                                     // Entries in the log
+
+    HistoryAdapter(HistoryLog log, RecentHistory recent) {
+        this.log = log;
+        this.recent = recent;
+    }
+
+    /**
+     * Finds how many entries there are, then shows them.
+     *
+     * @param onLoaded Run on the main thread once the count is known.
+     */
+    void load(Runnable onLoaded) {
+        // Taken with the request: calculations are added to both on the main thread, and the log
+        // counts those appended before the request, so both end with the same calculation
+        long added = recent.added();
+        log.readPage(0, 0, (total, first, entries) -> main.post(() -> {
+            this.total = total;
+            recentOffset = added - total;
+            notifyDataSetChanged();
+            onLoaded.run();
+        }));
+    }
+
+    @NonNull
+    @Override
+    public RowHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new RowHolder(LayoutInflater.from(parent.getContext()).inflate(R.layout.item_history, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RowHolder holder, int position) {
+        long number = position + recentOffset;
+        if (recent.contains(number)) {
+            holder.bind(recent.expression(number), DisplayFormat.format(recent.result(number), PRECISION));
+            return;
+        }
+        int page = position / PAGE_SIZE;
+        int row = position % PAGE_SIZE;
+        List<HistoryEntry> entries = pages.get(page);
+        if (entries != null && row < entries.size()) {
+            HistoryEntry entry = entries.get(row);
+            holder.bind(entry.expression(), display(entry.result()));
+        } else {
+            holder.bind("", ""); // Until the page arrives
+        }
+        if (entries == null) request(page);
+        // Read ahead in the direction of scrolling before the rows are needed
+        if (row >= PAGE_SIZE - PREFETCH && (page + 1) * PAGE_SIZE < total) request(page + 1);
+        if (row < PREFETCH && page > 0) request(page - 1);
+    }
+
+    @Override
+    public int getItemCount() {
+        return total;
+    }
+
+    /**
+     * Reads a page in the background unless it is loaded or on its way.
+     */
+    private void request(int page) {
+        if (pages.containsKey(page) || !loading.add(page)) return;
+        log.readPage(page * PAGE_SIZE, PAGE_SIZE, (total, first, entries) -> main.post(() -> {
+            loading.remove(page);
+            pages.put(page, entries);
+            notifyItemRangeChanged(first, Math.min(entries.size(), this.total - first));
+        }));
+    }
+
+    /**
+     * Formats a logged result as the ring's doubles are, so a row reads the
+     * same whichever of the two it comes from.
+     */
+    private static String display(String result) {
+        try {
+            return DisplayFormat.format(Double.parseDouble(result), PRECISION);
+        } catch (NumberFormatException e) {
+            return result; // Not a number; shown as logged
+        }
+    }
+
+    static final class RowHolder extends RecyclerView.ViewHolder {
+
+        private final TextView expression;
+        private final TextView result;
+
+        RowHolder(View itemView) {
+            super(itemView);
+            expression = itemView.findViewById(R.id.history_expression);
+            result = itemView.findViewById(R.id.history_result);
+        }
+
+        void bind(String expression, String result) {
+            this.expression.setText(expression);
+            this.result.setText(result.isEmpty() ? "" : "= " + result);
+        }
+    }
+}
@@ -4,22 +4,37 @@ import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
-import java.util.Stack;
+import com.main.calculator.engine.Deadline;
+import com.main.calculator.engine.DivisionByZero;
+import com.main.calculator.engine.Engine;
+import com.main.calculator.engine.EvaluationTimeoutException;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final long EVALUATION_TIMEOUT_MILLIS = 2_000; // Longest = may take before "Timeout"
+    private static final int RESULT_CACHE_CAPACITY = 64;         // Repeated calculations answered at once
+
     private TextView display;                    // Display for showing input/output
     private final StringBuilder currentInput = new StringBuilder(); // Current user input
     private boolean isNewInput = true;           // Tracks if a new input sequence started
     private boolean hasDecimal = false;          // Tracks if the current number already has a decimal
     private boolean lastInputIsOperator = false; // Prevents consecutive operators
+    private final Engine engine = new Engine(DivisionByZero.RETURN_ZERO); // Only used on the evaluation thread
+    private final AsyncEvaluator evaluator = new AsyncEvaluator(EVALUATION_TIMEOUT_MILLIS); // Runs = off the main thread
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         display = findViewById(R.id.display); // Reference to the display TextView
+        engine.setTracer(SystemTracer.INSTANCE); // Engine sections in system traces, when enabled
+        engine.setResultCacheCapacity(RESULT_CACHE_CAPACITY); // Same input, same result
         // Number button IDs
         int[] numberButtons = {
                 R.id.btn_0, R.id.btn_1, R.id.btn_2, R.id.btn_3, R.id.btn_4,
@@ -45,11 +60,18 @@ public class MainActivity extends AppCompatActivity {
         findViewById(R.id.btn_equals).setOnClickListener(v -> displayCalculationResult());
     }
 
+    @Override
+    protected void onDestroy() {
+        evaluator.shutdown(); // Stop the evaluation thread
+        super.onDestroy();
+    }
+
     /**
      * Handles clicks on number buttons.
      * Appends the clicked number to the current input.
      */
     private void handleNumberClick(View v) {
+        evaluator.cancel(); // A key press supersedes a pending evaluation
         Button button = (Button) v;
         if (isNewInput) {
             currentInput.setLength(0); // Clear input if it's a new sequence
@@ -65,6 +87,7 @@ public class MainActivity extends AppCompatActivity {
      * Ensures only one decimal point is added per number.
      */
     private void handleDecimalClick(View v) {
+        evaluator.cancel(); // A key press supersedes a pending evaluation
         if (!hasDecimal && !lastInputIsOperator) {
             if (currentInput.length() == 0 || isNewInput) {
                 currentInput.append("0"); // Add leading zero if empty
@@ -81,6 +104,7 @@ public class MainActivity extends AppCompatActivity {
      * Ensures no consecutive operators are added.
      */
     private void handleOperatorClick(View v) {
+        evaluator.cancel(); // A key press supersedes a pending evaluation
         if (currentInput.length() == 0 || lastInputIsOperator) return; // Ignore invalid clicks
 
         Button button = (Button) v;
@@ -96,6 +120,7 @@ public class MainActivity extends AppCompatActivity {
      * Clears the display and resets all flags.
      */
     private void resetCalculator() {
+        evaluator.cancel(); // A key press supersedes a pending evaluation
         currentInput.setLength(0); // Clear input buffer
         display.setText("0"); // Reset display to default
         isNewInput = true; // Reset new input flag
@@ -104,91 +129,51 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Calculates the result of the current expression.
+     * Calculates the result of the current expression on the background
+     * thread and displays it, unless another key is pressed first.
      * Handles exceptions for invalid input.
      */
     private void displayCalculationResult() {
-        try {
-            String expression = currentInput.toString(); // Get the current expression
-            double result = evaluateExpression(expression); // Evaluate the expression
-            display.setText(String.valueOf(result)); // Display the result
-            currentInput.setLength(0); // Clear the input
-            currentInput.append(result); // Store the result for further operations
-            isNewInput = true; // Set new input flag
-            hasDecimal = (String.valueOf(result).contains(".")); // Update decimal flag
-            lastInputIsOperator = false; // Reset operator flag
-        } catch (Exception e) {
-            display.setText("Error"); // Display error message
-            isNewInput = true; // Reset new input flag
-        }
-    }
-
-    /**
-     * Evaluates the given arithmetic expression using two stacks.
-     *
-     * @param expression The expression to evaluate.
-     * @return The result of the evaluation.
-     */
-    private double evaluateExpression(String expression) {
-        String[] tokens = expression.split(" "); // Split the expression into tokens
-        Stack<Double> numbers = new Stack<>(); // Stack for numbers
-        Stack<String> operators = new Stack<>(); // Stack for operators
-
-        for (String token : tokens) {
-            if (token.matches("\\d+(\\.\\d+)?")) { // If the token is a number
-                numbers.push(Double.parseDouble(token));
-            } else if (token.matches("[+\\-*/]")) { // If the token is an operator
-                while (!operators.isEmpty() && precedence(operators.peek()) >= precedence(token)) {
-                    performCalculation(numbers, operators.pop());
-                }
-                operators.push(token);
+        String expression = currentInput.toString(); // Get the current expression
+        evaluator.submit(deadline -> evaluateExpression(expression, deadline), new AsyncEvaluator.Callback<Double>() {
+            @Override
+            public void onResult(Double result) {
+                display.setText(String.valueOf(result)); // Display the result
+                currentInput.setLength(0); // Clear the input
+                currentInput.append(result); // Store the result for further operations
+                isNewInput = true; // Set new input flag
+                hasDecimal = (String.valueOf(result).contains(".")); // Update decimal flag
+                lastInputIsOperator = false; // Reset operator flag
             }
-        }
-
-        // Process remaining operators
-        while (!operators.isEmpty()) {
-            performCalculation(numbers, operators.pop());
-        }
 
-        return numbers.pop(); // Final result
+            @Override
+            public void onError(RuntimeException error) {
+                // Display error message
+                display.setText(error instanceof EvaluationTimeoutException ? "Timeout" : "Error");
+                isNewInput = true; // Reset new input flag
+            }
+        });
     }
 
     /**
-     * Determines the precedence of an operator.
+     * Evaluates the given arithmetic expression with the engine.
      *
-     * @param operator The operator.
-     * @return The precedence value.
+     * @param expression The expression to evaluate.
+     * @param deadline   When to give up; runs on the background thread.
+     * @return The result of the evaluation.
      */
-    private int precedence(String operator) {
-        switch (operator) {
-            case "*": return 2;
-            case "/": return 2;
-            case "+": return 1;
-            case "-": return 1;
-            default: return 0;
-        }
+    private double evaluateExpression(String expression, Deadline deadline) {
+        return engine.evaluate(expression, deadline);
     }
 
     /**
-     * Performs a computation using the given operator and numbers.
-     *
-     * @param numbers  The stack of numbers.
-     * @param operator The operator to apply.
+     * Adds the engine's evaluation metrics to the activity dump, shown by
+     * {@code adb shell dumpsys activity com.main.calculator}.
      */
-    private void performCalculation(Stack<Double> numbers, String operator) {
-        if (numbers.size() < 2) return; // Ensure sufficient operands
-
-        double b = numbers.pop(); // Second operand
-        double a = numbers.pop(); // First operand
-        double result = 0;
-
-        switch (operator) {
-            case "+": result = a + b; break;
-            case "-": result = a - b; break;
-            case "/": result = (b == 0) ? 0 : a / b; break; // Handle division by zero
-            case "*": result = a * b; break;
-        }
-
-        numbers.push(result); // Push the result back onto the stack
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer,
+                     @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+        engine.metrics().dump(prefix, writer);
     }
 }
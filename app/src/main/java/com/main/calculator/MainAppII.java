@@ -1,15 +1,26 @@
 package com.main.calculator;
 
+import android.content.Intent;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
-import androidx.appcompat.app.AlertDialog;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Stack;
+import com.main.calculator.engine.Deadline;
+import com.main.calculator.engine.DisplayFormat;
+import com.main.calculator.engine.DivisionByZero;
+import com.main.calculator.engine.Engine;
+import com.main.calculator.engine.EvaluationTimeoutException;
+import com.main.calculator.engine.IncrementalEvaluator;
+import com.main.calculator.engine.Tracer;
+import com.main.calculator.history.HistoryEntry;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.math.MathContext;
 
 /**
  * MainAppII is a calculator application that handles user input,
@@ -17,9 +28,17 @@ import java.util.Stack;
  */
 public class MainAppII extends AppCompatActivity {
 
+    private static final MathContext PRECISION = MathContext.DECIMAL64; // Digits shown for results
+    private static final long EVALUATION_TIMEOUT_MILLIS = 2_000;        // Longest = may take before "Timeout"
+    private static final int RESULT_CACHE_CAPACITY = 64;               // Repeated calculations answered at once
+
     private TextView display;                 // Display for calculator input/output
+    private TextView preview;                 // Running result shown while typing
     private StringBuilder currentInput;       // Holds the current input
-    private List<String> history;             // Stores calculation history
+    private final Engine engine = new Engine(DivisionByZero.THROW, PRECISION); // Only used on the evaluation thread
+    private final IncrementalEvaluator incremental = new IncrementalEvaluator(DivisionByZero.THROW); // Tracks currentInput as it is typed
+    private final Tracer tracer = SystemTracer.INSTANCE; // Trace sections for Perfetto, when enabled
+    private final AsyncEvaluator evaluator = new AsyncEvaluator(EVALUATION_TIMEOUT_MILLIS); // Runs = off the main thread
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -27,12 +46,20 @@ public class MainAppII extends AppCompatActivity {
         setContentView(R.layout.activity_main2);
 
         display = findViewById(R.id.display);
+        preview = findViewById(R.id.preview);
         currentInput = new StringBuilder();
-        history = new ArrayList<>();
+        engine.setTracer(tracer);
+        engine.setResultCacheCapacity(RESULT_CACHE_CAPACITY);
 
         initializeButtons();                  // Setup button listeners
     }
 
+    @Override
+    protected void onDestroy() {
+        evaluator.shutdown();
+        super.onDestroy();
+    }
+
     /**
      * Initializes all calculator buttons and assigns their click listeners.
      */
@@ -58,32 +85,39 @@ public class MainAppII extends AppCompatActivity {
      * @param view The button that was clicked.
      */
     private void onButtonClick(View view) {
+        tracer.beginSection("MainAppII.onButtonClick");
+        try {
+            handleButtonClick(view);
+        } finally {
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * Performs the calculator action of a button.
+     *
+     * @param view The button that was clicked.
+     */
+    private void handleButtonClick(View view) {
         Button button = (Button) view;
         String buttonText = button.getText().toString();
         int viewId = view.getId();
 
+        evaluator.cancel(); // Any key, history included, supersedes a pending evaluation
         if (viewId == R.id.btn_memory) {
-            showHistoryDialog(); // Show the memory (calculation history)
+            showHistory(); // Show the memory (calculation history)
         } else if (viewId == R.id.btn_clear) {
             currentInput.setLength(0);
+            incremental.reset();
             updateDisplay("0");
         } else if (viewId == R.id.btn_delete) {
             if (currentInput.length() > 0) {
                 currentInput.deleteCharAt(currentInput.length() - 1);
+                incremental.delete();
             }
             updateDisplay(currentInput.length() > 0 ? currentInput.toString() : "0");
         } else if (viewId == R.id.btn_equals) {
-            try {
-                String expression = currentInput.toString();
-                String result = evaluateExpression(expression);
-                history.add(expression + " = " + result); // Add to history
-                updateDisplay(result);
-                currentInput.setLength(0);
-                currentInput.append(result);
-            } catch (Exception e) {
-                updateDisplay("Error");
-                currentInput.setLength(0);
-            }
+            evaluateAndDisplayResult();
         } else if (viewId == R.id.btn_toggle_sign) {
             toggleSign();
         } else {
@@ -94,17 +128,42 @@ public class MainAppII extends AppCompatActivity {
                 }
             }
             currentInput.append(buttonText);
+            appendToPreview(buttonText);
             updateDisplay(currentInput.toString());
         }
     }
 
     /**
-     * Updates the calculator display with the given text.
+     * Updates the calculator display with the given text, and the live
+     * preview with the running result of the current input.
      *
      * @param text The text to display.
      */
     private void updateDisplay(String text) {
-        display.setText(text);
+        tracer.beginSection("MainAppII.updateDisplay");
+        try {
+            display.setText(text);
+            double running = incremental.preview(); // NaN when there is nothing to preview
+            preview.setText(Double.isNaN(running) ? "" : DisplayFormat.format(running, PRECISION));
+        } finally {
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * Feeds newly appended input to the incremental evaluator behind the preview.
+     *
+     * @param text The text appended to the current input.
+     */
+    private void appendToPreview(String text) {
+        tracer.beginSection("MainAppII.appendToPreview");
+        try {
+            for (int i = 0; i < text.length(); i++) {
+                incremental.append(text.charAt(i));
+            }
+        } finally {
+            tracer.endSection();
+        }
     }
 
     /**
@@ -112,6 +171,7 @@ public class MainAppII extends AppCompatActivity {
      */
     private void clearInput() {
         currentInput.setLength(0);
+        incremental.reset();
         updateDisplay("0");
     }
 
@@ -121,6 +181,7 @@ public class MainAppII extends AppCompatActivity {
     private void deleteLastCharacter() {
         if (currentInput.length() > 0) {
             currentInput.deleteCharAt(currentInput.length() - 1);
+            incremental.delete();
         }
         updateDisplay(currentInput.length() > 0 ? currentInput.toString() : "0");
     }
@@ -135,6 +196,7 @@ public class MainAppII extends AppCompatActivity {
             } else {
                 currentInput.insert(0, "-");
             }
+            incremental.set(currentInput);
             updateDisplay(currentInput.toString());
         }
     }
@@ -151,72 +213,53 @@ public class MainAppII extends AppCompatActivity {
             }
         }
         currentInput.append(text);
+        appendToPreview(text);
         updateDisplay(currentInput.toString());
     }
 
     /**
-     * Evaluates the current expression and displays the result.
+     * Evaluates the current input on the background thread, then shows the
+     * result and adds it to the history. The display is left unchanged until
+     * then; a key pressed in the meantime discards the result.
      */
     private void evaluateAndDisplayResult() {
-        try {
-            String expression = currentInput.toString();
-            String result = evaluateExpression(expression);
-            history.add(expression + " = " + result);
-            updateDisplay(result);
-            currentInput.setLength(0);
-            currentInput.append(result);
-        } catch (Exception e) {
-            updateDisplay("Error");
-            currentInput.setLength(0);
-        }
+        String expression = currentInput.toString();
+        evaluator.submit(deadline -> evaluateExpression(expression, deadline), new AsyncEvaluator.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+                HistoryEntry entry = new HistoryEntry(System.currentTimeMillis(), expression, result);
+                HistoryActivity.historyLog(MainAppII.this).append(entry); // Add to history
+                HistoryActivity.recentHistory().add(entry.timestamp(), expression, Double.parseDouble(result));
+                currentInput.setLength(0);
+                currentInput.append(result);
+                incremental.set(currentInput);
+                updateDisplay(result);
+            }
+
+            @Override
+            public void onError(RuntimeException error) {
+                currentInput.setLength(0);
+                incremental.reset();
+                updateDisplay(error instanceof EvaluationTimeoutException ? "Timeout" : "Error");
+            }
+        });
     }
 
     /**
-     * Evaluates the given arithmetic expression using a stack-based algorithm.
+     * Evaluates the given arithmetic expression with the shared engine in
+     * exact rational arithmetic, so that 0.1+0.2 shows as 0.3 and 1/3x3 as 1.
      *
      * @param expression The arithmetic expression to evaluate.
-     * @return The result of the evaluation.
+     * @param deadline   When to give up; runs on the background thread.
+     * @return The result of the evaluation, formatted for display.
      */
-    private String evaluateExpression(String expression) {
-        Stack<Double> numbers = new Stack<>();
-        Stack<Character> operators = new Stack<>();
-
-        int i = 0;
-        while (i < expression.length()) {
-            char c = expression.charAt(i);
-
-            if (Character.isDigit(c) || c == '.') {
-                StringBuilder num = new StringBuilder();
-                while (i < expression.length() && (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
-                    num.append(expression.charAt(i));
-                    i++;
-                }
-                numbers.push(Double.parseDouble(num.toString()));
-            } else if (c == '(') {
-                operators.push(c);
-                i++;
-            } else if (c == ')') {
-                while (!operators.isEmpty() && operators.peek() != '(') {
-                    numbers.push(applyOperator(operators.pop(), numbers.pop(), numbers.pop()));
-                }
-                operators.pop();
-                i++;
-            } else if (isOperator(c)) {
-                while (!operators.isEmpty() && precedence(operators.peek()) >= precedence(c)) {
-                    numbers.push(applyOperator(operators.pop(), numbers.pop(), numbers.pop()));
-                }
-                operators.push(c);
-                i++;
-            } else {
-                i++;
-            }
-        }
-
-        while (!operators.isEmpty()) {
-            numbers.push(applyOperator(operators.pop(), numbers.pop(), numbers.pop()));
+    private String evaluateExpression(String expression, Deadline deadline) {
+        tracer.beginSection("MainAppII.evaluateExpression");
+        try {
+            return DisplayFormat.format(engine.evaluateRational(expression, deadline).toBigDecimal(PRECISION));
+        } finally {
+            tracer.endSection();
         }
-
-        return numbers.pop().toString();
     }
 
     /**
@@ -230,67 +273,25 @@ public class MainAppII extends AppCompatActivity {
     }
 
     /**
-     * Returns the precedence of the given operator.
-     *
-     * @param operator The operator to check.
-     * @return The precedence of the operator.
+     * Opens the calculation history, read from the history log as it scrolls.
      */
-    private int precedence(char operator) {
-        switch (operator) {
-            case '+':
-            case '-':
-                return 1;
-            case 'x':
-            case '/':
-            case '%':
-                return 2;
-            default:
-                return -1;
-        }
-    }
-
-    /**
-     * Applies the given operator to two operands.
-     *
-     * @param operator The operator to apply.
-     * @param b The second operand.
-     * @param a The first operand.
-     * @return The result of the operation.
-     */
-    private double applyOperator(char operator, double b, double a) {
-        switch (operator) {
-            case '+': return a + b;
-            case '-': return a - b;
-            case 'x': return a * b;
-            case '/':
-                if (b == 0) throw new ArithmeticException("Division by zero");
-                return a / b;
-            case '%': return a % b;
-            default: throw new IllegalArgumentException("Invalid operator: " + operator);
+    private void showHistory() {
+        tracer.beginSection("MainAppII.showHistory");
+        try {
+            startActivity(new Intent(this, HistoryActivity.class));
+        } finally {
+            tracer.endSection();
         }
     }
 
     /**
-     * Displays a dialog showing the calculation history.
+     * Adds the engine's evaluation metrics to the activity dump, shown by
+     * {@code adb shell dumpsys activity com.main.calculator}.
      */
-    private void showHistoryDialog() {
-        if (history.isEmpty()) {
-            new AlertDialog.Builder(this)
-                    .setTitle("Memory")
-                    .setMessage("No history available.")
-                    .setPositiveButton("OK", null)
-                    .show();
-        } else {
-            StringBuilder historyText = new StringBuilder();
-            for (String entry : history) {
-                historyText.append(entry).append("\n");
-            }
-//            updateDisplay(historyText.toString())
-            new AlertDialog.Builder(this)
-                    .setTitle("Memory")
-                    .setMessage(historyText.toString())
-                    .setPositiveButton("OK", null)
-                    .show();
-        }
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer,
+                     @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+        engine.metrics().dump(prefix, writer);
     }
 }
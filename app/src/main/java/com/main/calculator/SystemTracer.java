@@ -0,0 +1,31 @@
+package com.main.calculator;
+
+import androidx.tracing.Trace;
+
+import com.main.calculator.engine.Tracer;
+
+/**
+ * Forwards trace sections from the screens and the engine to the system
+ * tracer, so calculator stages show up by name in Perfetto captures.
+ *
+ * <p>Sections are only emitted in builds made with
+ * {@code -Pcalculator.traceSections=true}; otherwise {@link #INSTANCE} is
+ * {@link Tracer#NONE} and the calls cost nothing.
+ */
+final class SystemTracer implements Tracer {
+
+    static final Tracer INSTANCE = BuildConfig.TRACE_SECTIONS ? new SystemTracer() : Tracer.NONE;
+
+    private SystemTracer() {
+    }
+
+    @Override
+    public void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+}
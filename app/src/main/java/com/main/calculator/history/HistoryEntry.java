@@ -0,0 +1,38 @@
+package com.main.calculator.history;
+
+/**
+ * One calculation in the history: the expression as typed, the result as
+ * displayed and when it was made. Instances are immutable.
+ */
+public final class HistoryEntry {
+
+    private final long timestamp;    // Milliseconds since the epoch
+    private final String expression;
+    private final String result;
+
+    public HistoryEntry(long timestamp, String expression, String result) {
+        this.timestamp = timestamp;
+        this.expression = expression;
+        this.result = result;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public String expression() {
+        return expression;
+    }
+
+    public String result() {
+        return result;
+    }
+
+    /**
+     * Returns the entry as shown in the history, such as {@code 1+2 = 3}.
+     */
+    @Override
+    public String toString() {
+        return expression + " = " + result;
+    }
+}
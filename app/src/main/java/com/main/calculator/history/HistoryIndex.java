@@ -0,0 +1,366 @@
+package com.main.calculator.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An on-disk inverted index over the entries of a {@link HistoryLog}, to
+ * find calculations without reading the log. Records are numbered in log
+ * order from 0, as in {@link HistoryLog#readPage}, and every query returns
+ * them in ascending order.
+ *
+ * <p>Three things are indexed separately for each entry: the tokens of
+ * the expression as typed ({@code 1.190}, {@code x}, {@code (}), the
+ * numeric literals in it by value ({@code 1.190} matches {@code 1.19}), and
+ * the result, both by value and for range queries.
+ *
+ * <p>Entries are added to an in-memory segment that is written out as an
+ * immutable {@link IndexSegment} file every {@value #SEGMENT_SIZE} entries.
+ * Whenever {@value #MERGE_FACTOR} segments of the same size accumulate
+ * they are merged into one, so a million entries span at most a few dozen
+ * files and a query costs a few reads per file. Entries not yet written
+ * out are lost on close, to be added again from the log when it reopens.
+ *
+ * <p>An index is not thread-safe; {@link HistoryLog} confines it to its
+ * background thread.
+ */
+public final class HistoryIndex {
+
+    static final int SEGMENT_SIZE = 4096;          // Entries per written segment
+    static final int MERGE_FACTOR = 8;             // Segments of one size merged together
+    static final int MAX_TERM_LENGTH = 255;        // Longer tokens are not indexed
+
+    private static final char TOKEN = 't';         // Prefixes of the indexed fields
+    private static final char LITERAL = 'l';
+    private static final char RESULT = 'r';
+    private static final String SUFFIX = ".seg";
+
+    private final File directory;
+    private final int segmentSize;
+    private final List<IndexSegment> segments = new ArrayList<>(); // In record order
+    private int written;                           // Records in segments
+    private int size;                              // Records in the index
+
+    // Records since the last segment
+    private final TreeMap<String, IntList> terms = new TreeMap<>();
+    private double[] values = new double[64];
+    private int[] valueRecords = new int[64];
+    private int valueCount;
+    private final Set<String> entryTerms = new HashSet<>(); // Scratch for add
+
+    /**
+     * Opens the index in a directory, creating it if needed. Segments left
+     * over from an interrupted write or merge are removed.
+     *
+     * @param directory Holds the segment files; nothing else should be kept there.
+     * @throws IOException If the directory cannot be read or created.
+     */
+    public HistoryIndex(File directory) throws IOException {
+        this(directory, SEGMENT_SIZE);
+    }
+
+    HistoryIndex(File directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        recover();
+    }
+
+    /**
+     * Returns the number of entries indexed, which is the record number the
+     * next entry gets.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Indexes the next entry of the log.
+     *
+     * @param entry The entry.
+     * @throws IOException If a segment cannot be written.
+     */
+    public void add(HistoryEntry entry) throws IOException {
+        int record = size++;
+        Set<String> found = entryTerms;
+        found.clear();
+        String expression = entry.expression();
+        for (int i = 0; i < expression.length(); ) {
+            char c = expression.charAt(i);
+            int end = i + 1;
+            if (isNumeric(c)) {
+                while (end < expression.length() && isNumeric(expression.charAt(end))) end++;
+                String literal = normalize(expression.substring(i, end));
+                if (literal != null) found.add(LITERAL + literal);
+            }
+            if (!Character.isWhitespace(c)) found.add(TOKEN + expression.substring(i, end));
+            i = end;
+        }
+        String result = normalize(entry.result());
+        found.add(RESULT + (result != null ? result : entry.result()));
+        for (String term : found) {
+            if (term.length() > MAX_TERM_LENGTH + 1) continue;
+            IntList postings = terms.get(term);
+            if (postings == null) terms.put(term, postings = new IntList());
+            postings.add(record);
+        }
+        if (result != null) {
+            double value = Double.parseDouble(result) + 0.0; // No -0.0, which sorts below 0.0
+            if (!Double.isNaN(value)) {
+                if (valueCount == values.length) {
+                    values = Arrays.copyOf(values, valueCount * 2);
+                    valueRecords = Arrays.copyOf(valueRecords, valueCount * 2);
+                }
+                values[valueCount] = value;
+                valueRecords[valueCount++] = record;
+            }
+        }
+        if (size - written == segmentSize) writeSegment();
+    }
+
+    /**
+     * Finds the entries whose expression contains a token as typed, such as
+     * {@code 1.190} or {@code x}.
+     *
+     * @param token The token.
+     * @return The records, ascending.
+     * @throws IOException If the index cannot be read.
+     */
+    public int[] token(String token) throws IOException {
+        return postings(TOKEN + token);
+    }
+
+    /**
+     * Finds the entries whose expression contains a number of the given
+     * value, however it was written.
+     *
+     * @param number The number, such as {@code 1.19}.
+     * @return The records, ascending; none if {@code number} is not a number.
+     * @throws IOException If the index cannot be read.
+     */
+    public int[] literal(String number) throws IOException {
+        String literal = normalize(number);
+        return literal == null ? new int[0] : postings(LITERAL + literal);
+    }
+
+    /**
+     * Finds the entries with a given result.
+     *
+     * @param result The result, compared by value if it is a number.
+     * @return The records, ascending.
+     * @throws IOException If the index cannot be read.
+     */
+    public int[] result(String result) throws IOException {
+        String normalized = normalize(result);
+        return postings(RESULT + (normalized != null ? normalized : result));
+    }
+
+    /**
+     * Finds the entries whose result lies in a range.
+     *
+     * @param min The smallest result, inclusive.
+     * @param max The largest result, inclusive.
+     * @return The records, ascending.
+     * @throws IOException If the index cannot be read.
+     */
+    public int[] resultsBetween(double min, double max) throws IOException {
+        IntList records = new IntList();
+        for (IndexSegment segment : segments) segment.results(min, max, records);
+        for (int i = 0; i < valueCount; i++) {
+            if (values[i] >= min && values[i] <= max) records.add(valueRecords[i]);
+        }
+        return records.toSortedArray();
+    }
+
+    /**
+     * Removes every entry, as when the log turns out shorter than the index.
+     *
+     * @throws IOException If a segment cannot be deleted.
+     */
+    public void clear() throws IOException {
+        close();
+        for (IndexSegment segment : segments) delete(segment.file);
+        segments.clear();
+        written = 0;
+        size = 0;
+    }
+
+    /**
+     * Closes the segment files. Entries not yet in a segment are dropped.
+     *
+     * @throws IOException If a segment cannot be closed.
+     */
+    public void close() throws IOException {
+        for (IndexSegment segment : segments) segment.close();
+        terms.clear();
+        valueCount = 0;
+    }
+
+    /**
+     * A search run against the index, on the log's background thread.
+     */
+    public interface Query {
+
+        int[] run(HistoryIndex index) throws IOException;
+    }
+
+    private int[] postings(String term) throws IOException {
+        IntList records = new IntList();
+        for (IndexSegment segment : segments) segment.postings(term, records);
+        IntList recent = terms.get(term);
+        if (recent != null) {
+            for (int i = 0; i < recent.size(); i++) records.add(recent.get(i));
+        }
+        return records.toArray();
+    }
+
+    private void writeSegment() throws IOException {
+        Iterator<Map.Entry<String, IntList>> entries = terms.entrySet().iterator();
+        Integer[] order = new Integer[valueCount];
+        for (int i = 0; i < valueCount; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        IndexSegment segment = IndexSegment.write(file(written, size - written), written, size - written,
+                new IndexSegment.Terms() {
+                    private Map.Entry<String, IntList> entry;
+
+                    @Override
+                    public boolean next() {
+                        entry = entries.hasNext() ? entries.next() : null;
+                        return entry != null;
+                    }
+
+                    @Override
+                    public String term() {
+                        return entry.getKey();
+                    }
+
+                    @Override
+                    public IntList postings() {
+                        return entry.getValue();
+                    }
+                }, new IndexSegment.Results() {
+                    private int i = -1;
+
+                    @Override
+                    public boolean next() {
+                        return ++i < order.length;
+                    }
+
+                    @Override
+                    public double value() {
+                        return values[order[i]];
+                    }
+
+                    @Override
+                    public int record() {
+                        return valueRecords[order[i]];
+                    }
+                });
+        segments.add(segment);
+        written = size;
+        terms.clear();
+        valueCount = 0;
+
+        // Merge runs of equal segments, smallest first, so sizes stay tiered
+        while (segments.size() >= MERGE_FACTOR) {
+            List<IndexSegment> last = segments.subList(segments.size() - MERGE_FACTOR, segments.size());
+            int count = last.get(0).count;
+            for (IndexSegment s : last) {
+                if (s.count != count) return;
+            }
+            IndexSegment merged = IndexSegment.merge(file(last.get(0).first, count * MERGE_FACTOR), last);
+            for (IndexSegment s : last) {
+                s.close();
+                delete(s.file);
+            }
+            last.clear();
+            segments.add(merged);
+        }
+    }
+
+    /**
+     * Opens the chain of segments covering records from 0, preferring
+     * merged segments, and deletes everything else.
+     */
+    private void recover() throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) throw new IOException("Cannot list " + directory);
+        List<int[]> ranges = new ArrayList<>();      // {first, count}
+        for (File file : files) {
+            int[] range = parse(file.getName());
+            if (range != null) {
+                ranges.add(range);
+            } else {
+                delete(file);                        // Unfinished writes
+            }
+        }
+        // By first record, the largest of segments starting together first
+        ranges.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+        for (int[] range : ranges) {
+            File file = file(range[0], range[1]);
+            if (range[0] != written) {
+                delete(file);                        // Merged into another, or after a gap
+                continue;
+            }
+            try {
+                segments.add(new IndexSegment(file));
+                written += range[1];
+            } catch (IOException e) {
+                delete(file);
+            }
+        }
+        size = written;
+    }
+
+    private File file(int first, int count) {
+        return new File(directory, first + "-" + count + SUFFIX);
+    }
+
+    /**
+     * Returns {first, count} of a segment file name, or null if it is not one.
+     */
+    private static int[] parse(String name) {
+        if (!name.endsWith(SUFFIX)) return null;
+        int dash = name.indexOf('-');
+        try {
+            int first = Integer.parseInt(name.substring(0, dash));
+            int count = Integer.parseInt(name.substring(dash + 1, name.length() - SUFFIX.length()));
+            return first >= 0 && count > 0 ? new int[]{first, count} : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void delete(File file) throws IOException {
+        if (!file.delete() && file.exists()) throw new IOException("Cannot delete " + file);
+    }
+
+    private static boolean isNumeric(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+
+    /**
+     * Returns the canonical text of a number, so that {@code 1.190} and
+     * {@code 1.19} index alike, or null if the text is not a number.
+     */
+    private static String normalize(String number) {
+        try {
+            BigDecimal value = new BigDecimal(number.trim()).stripTrailingZeros();
+            // Plain text of 1E+1000000 would be a megabyte of zeros
+            return Math.abs(value.scale()) > MAX_TERM_LENGTH ? value.toString() : value.toPlainString();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package com.main.calculator.history;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * The calculation history, persisted as an append-only binary log.
+ *
+ * <p>The file starts with a 4-byte magic number, followed by one record
+ * per entry: the payload length and the CRC-32 of the payload as two
+ * big-endian ints, then the payload itself (the timestamp as a long, the
+ * length of the UTF-8 expression as an int, the expression and the UTF-8
+ * result). An entry longer than {@link #MAX_PAYLOAD} is cut to fit, since
+ * recovery takes a longer record for corruption.
+ *
+ * <p>All file access happens on one background thread, in the order the
+ * calls were made, so callers on the UI thread never wait for storage.
+ * Appends that arrive together are written with one write and made
+ * durable with one {@code fsync}. The first time the file is read, a
+ * torn or corrupt tail left by a crash is cut off at the last intact
+ * record, so history survives restarts up to the last completed batch.
+ * An exception from one command, such as a callback that throws, is handed
+ * to the thread's uncaught exception handler and the thread carries on.
+ *
+ * <p>Given a directory for it, the log also keeps a {@link HistoryIndex}
+ * up to date as entries are appended, for {@link #search}. Entries the
+ * index lost in a crash are added again from the log when it opens.
+ *
+ * <p>A sparse {@link OffsetIndex} built on that first read lets
+ * {@link #readPage} seek close to any record, so a page costs the same
+ * however long the history grows.
+ *
+ * <p>Open at most one log per file per process.
+ */
+public final class HistoryLog {
+
+    static final int MAGIC = 0x43484C31;      // "CHL1"
+    static final int HEADER_SIZE = 4;
+    static final int RECORD_HEADER_SIZE = 8;  // Payload length and CRC
+    static final int MAX_PAYLOAD = 1 << 20;   // Longer lengths can only be corruption
+
+    private static final int MAX_BATCH = 256; // Appends per write and fsync
+    private static final int CATCH_UP_BATCH = 1024; // Entries read at once to bring the index up to date
+    private static final Object STOP = new Object();
+
+    private final File file;
+    private final File indexDirectory;        // Null if not indexed
+    private final BlockingQueue<Object> commands = new LinkedBlockingQueue<>(); // Entries, reads and STOP
+    private final Thread writer;
+    private FileChannel channel;              // Opened and recovered by the first command
+    private final OffsetIndex offsets = new OffsetIndex(); // Records in the file
+    private HistoryIndex index;               // Opened with the file; null if not indexed or failed
+    private long end;                         // Offset just past the last record
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private final CRC32 crc = new CRC32();
+
+    private long appended;                    // Guarded by this
+    private long synced;                      // Guarded by this
+    private IOException failure;              // Guarded by this; set once the log is unusable
+    private IOException lost;                 // Guarded by this; why an entry was dropped, until flush reports it
+
+    /**
+     * Opens the log, creating the file when it is first written.
+     *
+     * @param file The log file.
+     */
+    public HistoryLog(File file) {
+        this(file, null);
+    }
+
+    /**
+     * Opens the log and its search index, creating them when first written.
+     *
+     * @param file           The log file.
+     * @param indexDirectory The directory of the index, or null for none.
+     */
+    public HistoryLog(File file, File indexDirectory) {
+        this.file = file;
+        this.indexDirectory = indexDirectory;
+        this.writer = new Thread(this::run, "history-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues an entry to be appended. Returns immediately.
+     *
+     * @param entry The entry to persist.
+     */
+    public void append(HistoryEntry entry) {
+        synchronized (this) {
+            appended++;
+        }
+        commands.add(entry);
+    }
+
+    /**
+     * Reads every entry in the log, including all appends queued before
+     * this call, on the background thread.
+     *
+     * @param callback Receives the entries in order, on the background thread;
+     *                 an empty list if the log cannot be read.
+     */
+    public void readAll(Consumer<List<HistoryEntry>> callback) {
+        commands.add(callback);
+    }
+
+    /**
+     * Reads a range of entries, including all appends queued before this
+     * call, on the background thread.
+     *
+     * @param first    The number of the first entry to read, from 0 for the oldest.
+     * @param count    The most entries to read; 0 to only learn the total.
+     * @param callback Receives the entries, on the background thread.
+     */
+    public void readPage(int first, int count, PageCallback callback) {
+        if (first < 0 || count < 0) throw new IllegalArgumentException("Bad page " + first + "+" + count);
+        commands.add(new PageRead(first, count, callback));
+    }
+
+    /**
+     * Receives a page of entries read by {@link #readPage}.
+     */
+    public interface PageCallback {
+
+        /**
+         * @param total   The number of entries in the log; 0 if it cannot be read.
+         * @param first   The number of the first entry in the page.
+         * @param entries The entries read, fewer than asked at the end of the log.
+         */
+        void onPage(int total, int first, List<HistoryEntry> entries);
+    }
+
+    /**
+     * Searches the index, including all appends queued before this call, on
+     * the background thread. Record numbers are those of {@link #readPage}.
+     *
+     * @param query    The search, such as {@code index -> index.literal("1.19")}.
+     * @param callback Receives the records found, ascending, on the background
+     *                 thread; none if the log is not indexed or cannot be read.
+     */
+    public void search(HistoryIndex.Query query, Consumer<int[]> callback) {
+        commands.add(new Search(query, callback));
+    }
+
+    /**
+     * Waits until every entry appended so far is durable.
+     *
+     * @throws IOException          If the log could not be written, or an entry
+     *                              appended since the last flush could not be encoded.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized void flush() throws IOException, InterruptedException {
+        long target = appended;
+        while (synced < target && failure == null) wait();
+        if (failure != null) throw failure;
+        if (lost != null) {
+            IOException e = lost;
+            lost = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Writes all queued entries, closes the file and stops the background thread.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void close() throws InterruptedException {
+        commands.add(STOP);
+        writer.join();
+    }
+
+    private void run() {
+        List<HistoryEntry> batch = new ArrayList<>();
+        try {
+            while (true) {
+                Object command = commands.take();
+                if (command == STOP) break;
+                try {
+                    execute(command, batch);
+                } catch (RuntimeException e) {
+                    report(e); // Keep the thread alive: every later command, and flush, depends on it
+                } finally {
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void execute(Object command, List<HistoryEntry> batch) {
+        if (command instanceof HistoryEntry) {
+            batch.add((HistoryEntry) command);
+            // Take the appends queued behind it, up to the next read or STOP
+            Object next;
+            while (batch.size() < MAX_BATCH && (next = commands.peek()) instanceof HistoryEntry) {
+                batch.add((HistoryEntry) commands.poll());
+            }
+            write(batch);
+        } else if (command instanceof PageRead) {
+            readPage((PageRead) command);
+        } else if (command instanceof Search) {
+            search((Search) command);
+        } else {
+            @SuppressWarnings("unchecked")
+            Consumer<List<HistoryEntry>> callback = (Consumer<List<HistoryEntry>>) command;
+            callback.accept(read());
+        }
+    }
+
+    private void write(List<HistoryEntry> batch) {
+        int appends = batch.size();
+        try {
+            if (isFailed()) return;
+            FileChannel channel = channel();
+            buffer.clear();
+            int written = 0;
+            for (HistoryEntry entry : batch) {
+                int start = buffer.position();
+                try {
+                    entry = encode(entry);
+                } catch (RuntimeException e) {
+                    buffer.position(start); // Drop this entry only; the rest of the batch is fine
+                    lose(e);
+                    continue;
+                }
+                offsets.add(end + start);
+                batch.set(written++, entry);
+            }
+            batch.subList(written, appends).clear(); // Leaves the entries written, as written
+            buffer.flip();
+            while (buffer.hasRemaining()) end += channel.write(buffer, end);
+            channel.force(false);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        } catch (RuntimeException e) {
+            fail(new IOException("Cannot write " + file, e));
+            return;
+        } finally {
+            synchronized (this) {
+                synced += appends;
+                notifyAll();
+            }
+        }
+        try {
+            if (index != null) {
+                for (HistoryEntry entry : batch) index.add(entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            dropIndex(); // Rebuilt from the log when it next opens
+        }
+    }
+
+    private List<HistoryEntry> read() {
+        List<HistoryEntry> entries = new ArrayList<>();
+        try {
+            if (!isFailed()) scan(channel(), entries, null);
+        } catch (IOException e) {
+            fail(e);
+        }
+        return entries;
+    }
+
+    private void readPage(PageRead page) {
+        List<HistoryEntry> entries = new ArrayList<>();
+        int total = 0;
+        try {
+            if (!isFailed()) {
+                read(channel(), page.first, page.count, entries);
+                total = offsets.size();
+            }
+        } catch (IOException e) {
+            fail(e);
+            entries.clear();
+        }
+        page.callback.onPage(total, page.first, entries);
+    }
+
+    private void search(Search search) {
+        int[] records = new int[0];
+        try {
+            if (!isFailed()) channel();
+        } catch (IOException e) {
+            fail(e);
+        }
+        if (index != null && !isFailed()) {
+            try {
+                records = search.query.run(index);
+            } catch (IOException e) {
+                dropIndex();
+            } catch (RuntimeException e) {
+                report(e); // The query's own failure: segments report corruption as IOException
+            }
+        }
+        search.callback.accept(records);
+    }
+
+    /**
+     * Reads a range of records, seeking through the offset index.
+     */
+    private void read(FileChannel channel, int first, int count, List<HistoryEntry> entries) throws IOException {
+        int total = offsets.size();
+        if (first >= total || count == 0) return;
+        int record = OffsetIndex.floor(first);
+        DataInputStream in = open(channel, offsets.floorOffset(first));
+        byte[] payload = new byte[256];
+        int last = (int) Math.min(total, (long) first + count);
+        for (; record < last; record++) {
+            int length = in.readInt();
+            in.readInt(); // Checksum, verified when the file was opened
+            if (payload.length < length) payload = new byte[Math.max(length, payload.length * 2)];
+            in.readFully(payload, 0, length);
+            if (record >= first) entries.add(decode(payload, length));
+        }
+    }
+
+    /**
+     * Returns the open file, opening it and cutting off any torn tail on first use.
+     */
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            end = scan(channel, null, offsets);
+            if (end < HEADER_SIZE) {
+                offsets.clear();
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC);
+                header.flip();
+                channel.write(header, 0);
+                end = HEADER_SIZE;
+            } else if (end < channel.size()) {
+                channel.truncate(end);
+            }
+            channel.force(true);
+            if (indexDirectory != null) openIndex(channel);
+        }
+        return channel;
+    }
+
+    /**
+     * Opens the search index and adds the entries it is missing from the log.
+     */
+    private void openIndex(FileChannel channel) {
+        try {
+            index = new HistoryIndex(indexDirectory);
+            if (index.size() > offsets.size()) index.clear(); // The log lost a torn tail the index has
+            List<HistoryEntry> entries = new ArrayList<>(CATCH_UP_BATCH);
+            while (index.size() < offsets.size()) {
+                entries.clear();
+                read(channel, index.size(), CATCH_UP_BATCH, entries);
+                for (HistoryEntry entry : entries) index.add(entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            dropIndex();
+        }
+    }
+
+    /**
+     * Stops indexing after an index failure. The log itself is unaffected,
+     * and the index is repaired from it when the log is next opened.
+     */
+    private void dropIndex() {
+        if (index == null) return;
+        try {
+            index.close();
+        } catch (IOException e) {
+            // Nothing more to lose; the log holds every entry
+        }
+        index = null;
+    }
+
+    /**
+     * Reads records from the start of the file up to the first one that is
+     * incomplete or fails its checksum.
+     *
+     * @param channel The file.
+     * @param entries Receives the entries read, or null to only find the end.
+     * @param offsets Receives the offsets of the records read, or null.
+     * @return The offset just past the last intact record, or 0 if the header is missing.
+     * @throws IOException If the file cannot be read.
+     */
+    static long scan(FileChannel channel, List<HistoryEntry> entries, OffsetIndex offsets) throws IOException {
+        long size = channel.size();
+        DataInputStream in = open(channel, 0);
+        if (size < HEADER_SIZE || in.readInt() != MAGIC) return 0;
+        long offset = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[256];
+        while (offset + RECORD_HEADER_SIZE <= size) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 12 || length > MAX_PAYLOAD || offset + RECORD_HEADER_SIZE + length > size) break;
+            if (payload.length < length) payload = new byte[Math.max(length, payload.length * 2)];
+            in.readFully(payload, 0, length);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) break;
+            if (entries != null) entries.add(decode(payload, length));
+            if (offsets != null) offsets.add(offset);
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns a buffered stream over the file from the given offset. Writes
+     * are positional, so moving the channel's position does not affect them.
+     */
+    private static DataInputStream open(FileChannel channel, long offset) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(offset)), 1 << 16));
+    }
+
+    /**
+     * Adds the record of an entry to the buffer.
+     *
+     * @return The entry as written, cut to {@link #MAX_PAYLOAD} if it was longer.
+     */
+    private HistoryEntry encode(HistoryEntry entry) {
+        byte[] expression = entry.expression().getBytes(StandardCharsets.UTF_8);
+        byte[] result = entry.result().getBytes(StandardCharsets.UTF_8);
+        if (12 + expression.length + result.length > MAX_PAYLOAD) {
+            // Rather than a record scan() would take for a torn tail, dropping it and all after it
+            result = truncate(result, MAX_PAYLOAD - 12);
+            expression = truncate(expression, MAX_PAYLOAD - 12 - result.length);
+            entry = new HistoryEntry(entry.timestamp(), new String(expression, StandardCharsets.UTF_8),
+                    new String(result, StandardCharsets.UTF_8));
+        }
+        int length = 12 + expression.length + result.length;
+        if (buffer.remaining() < RECORD_HEADER_SIZE + length) {
+            int needed = buffer.position() + RECORD_HEADER_SIZE + length;
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, needed));
+            buffer.flip();
+            buffer = grown.put(buffer);
+        }
+        int start = buffer.position();
+        buffer.putInt(length).putInt(0);
+        int payloadStart = buffer.position();
+        buffer.putLong(entry.timestamp()).putInt(expression.length).put(expression).put(result);
+        crc.reset();
+        crc.update(buffer.array(), payloadStart, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        return entry;
+    }
+
+    /**
+     * Returns UTF-8 text cut to at most the given length, at a character boundary.
+     */
+    private static byte[] truncate(byte[] utf8, int length) {
+        if (utf8.length <= length) return utf8;
+        while (length > 0 && (utf8[length] & 0xC0) == 0x80) length--; // Not inside a character
+        return Arrays.copyOf(utf8, length);
+    }
+
+    private static HistoryEntry decode(byte[] payload, int length) {
+        ByteBuffer in = ByteBuffer.wrap(payload, 0, length);
+        long timestamp = in.getLong();
+        int expressionLength = in.getInt();
+        String expression = new String(payload, 12, expressionLength, StandardCharsets.UTF_8);
+        String result = new String(payload, 12 + expressionLength, length - 12 - expressionLength,
+                StandardCharsets.UTF_8);
+        return new HistoryEntry(timestamp, expression, result);
+    }
+
+    private static final class Search {
+
+        final HistoryIndex.Query query;
+        final Consumer<int[]> callback;
+
+        Search(HistoryIndex.Query query, Consumer<int[]> callback) {
+            this.query = query;
+            this.callback = callback;
+        }
+    }
+
+    private static final class PageRead {
+
+        final int first;
+        final int count;
+        final PageCallback callback;
+
+        PageRead(int first, int count, PageCallback callback) {
+            this.first = first;
+            this.count = count;
+            this.callback = callback;
+        }
+    }
+
+    private synchronized boolean isFailed() {
+        return failure != null;
+    }
+
+    private synchronized void fail(IOException e) {
+        failure = e;
+        notifyAll();
+    }
+
+    /**
+     * Hands an exception from a caller's query or callback to the thread's
+     * uncaught exception handler without ending the thread.
+     */
+    private static void report(RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    private synchronized void lose(RuntimeException e) {
+        lost = new IOException("Cannot encode history entry", e);
+    }
+
+    private void closeChannel() {
+        dropIndex();
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Every batch was already forced; nothing is lost
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package com.main.calculator.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * One immutable file of a {@link HistoryIndex}, covering a contiguous range
+ * of log records. The layout, with numbers big-endian and varints in
+ * 7-bit groups, least significant first:
+ *
+ * <pre>
+ *   int      magic
+ *   postings per term: its records less {@code first}, as delta varints
+ *   dictionary sorted by term: UTF term, varint postings count,
+ *            varlong postings offset, varint postings length
+ *   results sorted by value: double value, int record
+ *   dictionary index: UTF term and long offset of every 64th entry
+ *   results index: the value of every 256th result
+ *   trailer  long dictionary offset, int term count, long results offset,
+ *            int result count, long dictionary index offset, int blocks,
+ *            long results index offset, int first, int count, int magic
+ * </pre>
+ *
+ * <p>Only the two indexes are held in memory. A term lookup reads one
+ * dictionary block and one posting list; a range query reads the results it
+ * returns plus at most one block before them.
+ *
+ * <p>A corrupt file is reported as an {@link IOException}, whether found on
+ * opening or on a later read, so the index can be dropped and rebuilt.
+ *
+ * <p>Segments are confined to the thread of their {@link HistoryIndex}.
+ */
+final class IndexSegment implements Closeable {
+
+    static final int MAGIC = 0x43484931;           // "CHI1"
+    static final int TERM_INTERVAL = 64;           // Dictionary entries per block
+    static final int RESULT_INTERVAL = 256;        // Results per block
+    private static final int RESULT_SIZE = 12;
+    private static final int TRAILER_SIZE = 8 + 4 + 8 + 4 + 8 + 4 + 8 + 4 + 4 + 4;
+
+    final File file;
+    final int first;                               // First record covered
+    final int count;                               // Records covered
+    private final FileChannel channel;
+    private final long dictionaryOffset;
+    private final int termCount;
+    private final long resultsOffset;
+    private final int resultCount;
+    private final String[] blockTerms;             // First term of each dictionary block
+    private final long[] blockOffsets;             // Where each block starts, then where the last ends
+    private final double[] blockValues;            // First value of each results block
+
+    /**
+     * Opens a segment written by {@link #write}.
+     *
+     * @param file The segment file.
+     * @throws IOException If the file cannot be read or is not a complete segment.
+     */
+    IndexSegment(File file) throws IOException {
+        this.file = file;
+        channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            long size = channel.size();
+            if (size < 4 + TRAILER_SIZE) throw new IOException("Truncated index segment " + file);
+            ByteBuffer trailer = read(size - TRAILER_SIZE, TRAILER_SIZE);
+            dictionaryOffset = trailer.getLong();
+            termCount = trailer.getInt();
+            resultsOffset = trailer.getLong();
+            resultCount = trailer.getInt();
+            long dictionaryIndexOffset = trailer.getLong();
+            int blocks = trailer.getInt();
+            long resultsIndexOffset = trailer.getLong();
+            first = trailer.getInt();
+            count = trailer.getInt();
+            if (trailer.getInt() != MAGIC) throw new IOException("Not an index segment " + file);
+
+            DataInputStream in = stream(dictionaryIndexOffset);
+            blockTerms = new String[blocks];
+            blockOffsets = new long[blocks + 1];
+            for (int b = 0; b < blocks; b++) {
+                blockTerms[b] = in.readUTF();
+                blockOffsets[b] = in.readLong();
+            }
+            blockOffsets[blocks] = resultsOffset;
+            in = stream(resultsIndexOffset);
+            blockValues = new double[(resultCount + RESULT_INTERVAL - 1) / RESULT_INTERVAL];
+            for (int b = 0; b < blockValues.length; b++) {
+                blockValues[b] = in.readDouble();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } catch (RuntimeException e) {
+            channel.close();
+            throw corrupt(e);
+        }
+    }
+
+    /**
+     * Adds the records containing a term, in ascending order.
+     *
+     * @param term The term, with its field prefix.
+     * @param out  Receives the records.
+     * @throws IOException If the file cannot be read or is corrupt.
+     */
+    void postings(String term, IntList out) throws IOException {
+        try {
+            findPostings(term, out);
+        } catch (RuntimeException e) {
+            throw corrupt(e);
+        }
+    }
+
+    private void findPostings(String term, IntList out) throws IOException {
+        // The last block starting at or before the term
+        int low = 0;
+        int high = blockTerms.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blockTerms[mid].compareTo(term) <= 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block < 0) return;
+        ByteBuffer bytes = read(blockOffsets[block], (int) (blockOffsets[block + 1] - blockOffsets[block]));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array()));
+        for (int i = 0; i < TERM_INTERVAL && in.available() > 0; i++) {
+            int order = in.readUTF().compareTo(term);
+            int size = readVarint(in);
+            long offset = readVarlong(in);
+            int length = readVarint(in);
+            if (order > 0) return;
+            if (order == 0) {
+                decode(read(offset, length).array(), size, out);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the records whose result lies in a range, in order of result.
+     *
+     * @param min The smallest result, inclusive.
+     * @param max The largest result, inclusive.
+     * @param out Receives the records.
+     * @throws IOException If the file cannot be read or is corrupt.
+     */
+    void results(double min, double max, IntList out) throws IOException {
+        try {
+            findResults(min, max, out);
+        } catch (RuntimeException e) {
+            throw corrupt(e);
+        }
+    }
+
+    private void findResults(double min, double max, IntList out) throws IOException {
+        if (resultCount == 0 || !(min <= max)) return;
+        // The last block starting below min; equal values may begin in it
+        int low = 0;
+        int high = blockValues.length - 1;
+        int block = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blockValues[mid] < min) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int i = block * RESULT_INTERVAL;
+        DataInputStream in = stream(resultsOffset + (long) i * RESULT_SIZE);
+        for (; i < resultCount; i++) {
+            double value = in.readDouble();
+            int record = in.readInt();
+            if (value > max) break;
+            if (value >= min) out.add(record);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private IOException corrupt(RuntimeException e) {
+        return new IOException("Corrupt index segment " + file, e);
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        if (offset < 0 || length < 0) throw new IOException("Corrupt index segment " + file);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Truncated index segment " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private DataInputStream stream(long offset) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(offset)), 4096));
+    }
+
+    /**
+     * The terms of a segment being written, in ascending order.
+     */
+    interface Terms {
+
+        /**
+         * Moves to the next term.
+         *
+         * @return False when there are no more terms.
+         */
+        boolean next() throws IOException;
+
+        String term();
+
+        /**
+         * Returns the records containing the current term, in ascending order.
+         */
+        IntList postings();
+    }
+
+    /**
+     * The results of a segment being written, in ascending order of value.
+     */
+    interface Results {
+
+        /**
+         * Moves to the next result.
+         *
+         * @return False when there are no more results.
+         */
+        boolean next() throws IOException;
+
+        double value();
+
+        int record();
+    }
+
+    /**
+     * Writes and opens a segment. The file appears complete or not at all.
+     *
+     * @param file    The segment file.
+     * @param first   The first record covered.
+     * @param count   The records covered.
+     * @param terms   The terms, in ascending order.
+     * @param results The results, in ascending order of value.
+     * @return The new segment.
+     * @throws IOException If the file cannot be written.
+     */
+    static IndexSegment write(File file, int first, int count, Terms terms, Results results) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        File dictionary = new File(file.getPath() + ".dict"); // Written alongside the postings, then appended
+        List<String> blockTerms = new ArrayList<>();
+        List<Long> blockOffsets = new ArrayList<>();
+        List<Double> blockValues = new ArrayList<>();
+        byte[] scratch = new byte[256];
+        try (FileOutputStream target = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16));
+             DataOutputStream dict = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dictionary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            int termCount = 0;
+            while (terms.next()) {
+                String term = terms.term();
+                IntList postings = terms.postings();
+                if (termCount++ % TERM_INTERVAL == 0) {
+                    blockTerms.add(term);
+                    blockOffsets.add((long) dict.size());
+                }
+                // Encoded in memory first; varints byte by byte through the stream are slow
+                if (scratch.length < postings.size() * 5) scratch = new byte[postings.size() * 5];
+                int length = 0;
+                int previous = first;
+                for (int p = 0; p < postings.size(); p++) {
+                    length = putVarint(scratch, length, postings.get(p) - previous);
+                    previous = postings.get(p);
+                }
+                long offset = out.size();
+                out.write(scratch, 0, length);
+                dict.writeUTF(term);
+                writeVarint(dict, postings.size());
+                writeVarlong(dict, offset);
+                writeVarint(dict, length);
+            }
+            dict.flush();
+
+            long dictionaryOffset = out.size();
+            try (InputStream in = new FileInputStream(dictionary)) {
+                byte[] chunk = new byte[1 << 16];
+                for (int n; (n = in.read(chunk)) > 0; ) out.write(chunk, 0, n);
+            }
+
+            long resultsOffset = out.size();
+            int resultCount = 0;
+            while (results.next()) {
+                if (resultCount++ % RESULT_INTERVAL == 0) blockValues.add(results.value());
+                out.writeDouble(results.value());
+                out.writeInt(results.record());
+            }
+
+            long dictionaryIndexOffset = out.size();
+            for (int b = 0; b < blockTerms.size(); b++) {
+                out.writeUTF(blockTerms.get(b));
+                out.writeLong(dictionaryOffset + blockOffsets.get(b));
+            }
+            long resultsIndexOffset = out.size();
+            for (double value : blockValues) out.writeDouble(value);
+
+            out.writeLong(dictionaryOffset);
+            out.writeInt(termCount);
+            out.writeLong(resultsOffset);
+            out.writeInt(resultCount);
+            out.writeLong(dictionaryIndexOffset);
+            out.writeInt(blockTerms.size());
+            out.writeLong(resultsIndexOffset);
+            out.writeInt(first);
+            out.writeInt(count);
+            out.writeInt(MAGIC);
+            out.flush();
+            target.getFD().sync();
+        } finally {
+            dictionary.delete();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp);
+        }
+        return new IndexSegment(file);
+    }
+
+    /**
+     * Writes and opens the segment holding everything in consecutive segments.
+     *
+     * @param file     The new segment file.
+     * @param segments The segments, in record order.
+     * @return The merged segment. The given segments are left open.
+     * @throws IOException If a file cannot be read or written, or a segment is corrupt.
+     */
+    static IndexSegment merge(File file, List<IndexSegment> segments) throws IOException {
+        List<Closeable> cursors = new ArrayList<>();
+        try {
+            PriorityQueue<TermCursor> terms = new PriorityQueue<>(segments.size(),
+                    Comparator.comparing((TermCursor c) -> c.term).thenComparingInt(c -> c.order));
+            PriorityQueue<ResultCursor> results = new PriorityQueue<>(segments.size(),
+                    Comparator.comparingDouble((ResultCursor c) -> c.value).thenComparingInt(c -> c.record));
+            int count = 0;
+            for (int s = 0; s < segments.size(); s++) {
+                IndexSegment segment = segments.get(s);
+                count += segment.count;
+                TermCursor termCursor = segment.new TermCursor(s);
+                cursors.add(termCursor);
+                if (termCursor.next()) terms.add(termCursor);
+                ResultCursor resultCursor = segment.new ResultCursor();
+                cursors.add(resultCursor);
+                if (resultCursor.next()) results.add(resultCursor);
+            }
+            return write(file, segments.get(0).first, count, new Terms() {
+                private final IntList postings = new IntList();
+                private String term;
+
+                @Override
+                public boolean next() throws IOException {
+                    if (terms.isEmpty()) return false;
+                    term = terms.peek().term;
+                    postings.clear();
+                    // Ties come out in segment order, so records stay ascending
+                    while (!terms.isEmpty() && terms.peek().term.equals(term)) {
+                        TermCursor cursor = terms.poll();
+                        for (int p = 0; p < cursor.postings.size(); p++) postings.add(cursor.postings.get(p));
+                        if (cursor.next()) terms.add(cursor);
+                    }
+                    return true;
+                }
+
+                @Override
+                public String term() {
+                    return term;
+                }
+
+                @Override
+                public IntList postings() {
+                    return postings;
+                }
+            }, new Results() {
+                private double value;
+                private int record;
+
+                @Override
+                public boolean next() throws IOException {
+                    if (results.isEmpty()) return false;
+                    ResultCursor cursor = results.poll();
+                    value = cursor.value;
+                    record = cursor.record;
+                    if (cursor.next()) results.add(cursor);
+                    return true;
+                }
+
+                @Override
+                public double value() {
+                    return value;
+                }
+
+                @Override
+                public int record() {
+                    return record;
+                }
+            });
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt index segment merged into " + file, e);
+        } finally {
+            for (Closeable cursor : cursors) cursor.close();
+        }
+    }
+
+    /**
+     * Reads the dictionary and the postings in order, each with its own stream.
+     */
+    private final class TermCursor implements Closeable {
+
+        final int order;                           // Of the segment among those merged
+        final IntList postings = new IntList();
+        String term;
+        private byte[] scratch = new byte[256];
+        private final DataInputStream dictionary;
+        private final DataInputStream postingStream;
+        private int remaining = termCount;
+
+        TermCursor(int order) throws IOException {
+            this.order = order;
+            dictionary = open(dictionaryOffset);
+            postingStream = open(4);
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) return false;
+            remaining--;
+            term = dictionary.readUTF();
+            int size = readVarint(dictionary);
+            readVarlong(dictionary);
+            int length = readVarint(dictionary);
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            postingStream.readFully(scratch, 0, length);
+            postings.clear();
+            decode(scratch, size, postings);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            dictionary.close();
+            postingStream.close();
+        }
+    }
+
+    private final class ResultCursor implements Closeable {
+
+        double value;
+        int record;
+        private final DataInputStream in;
+        private int remaining = resultCount;
+
+        ResultCursor() throws IOException {
+            in = open(resultsOffset);
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) return false;
+            remaining--;
+            value = in.readDouble();
+            record = in.readInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Opens a separate stream over the file, so that several can be read at once.
+     */
+    private DataInputStream open(long offset) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            in.getChannel().position(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new DataInputStream(new BufferedInputStream(in, 1 << 16));
+    }
+
+    /**
+     * Adds the records of a posting list.
+     */
+    private void decode(byte[] bytes, int size, IntList out) throws IOException {
+        int record = first;
+        int position = 0;
+        for (int p = 0; p < size; p++) {
+            int delta = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (position == bytes.length || shift == 35) throw new IOException("Malformed postings in " + file);
+                byte b = bytes[position++];
+                delta |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            record += delta;
+            out.add(record);
+        }
+    }
+
+    private static int putVarint(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    static void writeVarint(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static void writeVarlong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static int readVarint(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static long readVarlong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
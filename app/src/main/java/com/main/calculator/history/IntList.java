@@ -0,0 +1,42 @@
+package com.main.calculator.history;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints, for posting lists without boxing.
+ */
+final class IntList {
+
+    private int[] values = new int[8];
+    private int size;
+
+    void add(int value) {
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+    }
+
+    int get(int i) {
+        return values[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns the values in ascending order.
+     */
+    int[] toSortedArray() {
+        int[] sorted = toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,61 @@
+package com.main.calculator.history;
+
+import java.util.Arrays;
+
+/**
+ * A sparse index from record numbers to file offsets in a {@link HistoryLog}.
+ * Only every {@link #INTERVAL}th offset is kept, so the index of a log with
+ * 100,000 records takes about 12 kB; a lookup lands at most
+ * {@code INTERVAL - 1} records before the one wanted.
+ */
+final class OffsetIndex {
+
+    static final int INTERVAL = 64;               // Records per kept offset
+
+    private long[] offsets = new long[16];        // Offset of record i * INTERVAL
+    private int size;                             // Records indexed
+
+    /**
+     * Adds the next record.
+     *
+     * @param offset The offset of the record's header in the file.
+     */
+    void add(long offset) {
+        if (size % INTERVAL == 0) {
+            int slot = size / INTERVAL;
+            if (slot == offsets.length) offsets = Arrays.copyOf(offsets, slot * 2);
+            offsets[slot] = offset;
+        }
+        size++;
+    }
+
+    /**
+     * Returns the number of records indexed.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of the closest record at or before the given one
+     * whose offset is kept.
+     *
+     * @param record A record number, less than {@link #size()}.
+     */
+    static int floor(int record) {
+        return record - record % INTERVAL;
+    }
+
+    /**
+     * Returns the offset of the record {@link #floor(int)} returns.
+     *
+     * @param record A record number, less than {@link #size()}.
+     */
+    long floorOffset(int record) {
+        return offsets[record / INTERVAL];
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
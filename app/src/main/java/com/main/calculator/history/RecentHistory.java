@@ -0,0 +1,148 @@
+package com.main.calculator.history;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The most recent calculations, kept in memory in a fixed-capacity ring.
+ * Each calculation is a compact record of an expression id, the result as a
+ * {@code double} and a timestamp; the expression text is stored once per
+ * distinct expression and dropped when no record refers to it. Memory is
+ * therefore bounded by the capacity, and repeating a calculation costs 20
+ * bytes of preallocated arrays rather than new strings.
+ *
+ * <p>Calculations are numbered in the order they are added, from 0; once
+ * the ring is full, adding one forgets the oldest. Not thread-safe.
+ */
+public final class RecentHistory {
+
+    private final int[] expressionIds;        // Per slot, into texts
+    private final double[] results;
+    private final long[] timestamps;          // Milliseconds since the epoch
+    private long added;                       // Calculations ever added; the next one's number
+    private int size;                         // Slots in use
+
+    private final Map<String, Integer> ids = new HashMap<>(); // Interned expressions
+    private final String[] texts;             // By id
+    private final int[] references;           // Slots using each id
+    private final int[] freeIds;              // Stack of unused ids
+    private int freeCount;
+
+    /**
+     * @param capacity The number of calculations kept.
+     */
+    public RecentHistory(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity " + capacity);
+        expressionIds = new int[capacity];
+        results = new double[capacity];
+        timestamps = new long[capacity];
+        texts = new String[capacity];         // A full ring holds at most one id per slot
+        references = new int[capacity];
+        freeIds = new int[capacity];
+        for (int id = 0; id < capacity; id++) freeIds[id] = capacity - 1 - id;
+        freeCount = capacity;
+    }
+
+    /**
+     * Adds a calculation, forgetting the oldest if the ring is full.
+     *
+     * @param timestamp  When it was made, in milliseconds since the epoch.
+     * @param expression The expression as typed.
+     * @param result     The result.
+     */
+    public void add(long timestamp, String expression, double result) {
+        int capacity = results.length;
+        int slot = (int) (added % capacity);
+        if (size == capacity) {
+            release(expressionIds[slot]);
+        } else {
+            size++;
+        }
+        expressionIds[slot] = intern(expression);
+        results[slot] = result;
+        timestamps[slot] = timestamp;
+        added++;
+    }
+
+    /**
+     * Returns the number of calculations ever added, which is the number
+     * the next one gets.
+     */
+    public long added() {
+        return added;
+    }
+
+    /**
+     * Returns the number of calculations kept.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether a calculation is still kept.
+     *
+     * @param number The number of the calculation.
+     */
+    public boolean contains(long number) {
+        return number < added && number >= added - size;
+    }
+
+    /**
+     * @param number The number of a calculation that is still kept.
+     */
+    public String expression(long number) {
+        return texts[expressionIds[slot(number)]];
+    }
+
+    /**
+     * @param number The number of a calculation that is still kept.
+     */
+    public double result(long number) {
+        return results[slot(number)];
+    }
+
+    /**
+     * @param number The number of a calculation that is still kept.
+     */
+    public long timestamp(long number) {
+        return timestamps[slot(number)];
+    }
+
+    /**
+     * Forgets every calculation.
+     */
+    public void clear() {
+        while (size > 0) {
+            release(expressionIds[slot(added - size)]);
+            size--;
+        }
+    }
+
+    private int slot(long number) {
+        if (!contains(number)) throw new IndexOutOfBoundsException("Calculation " + number + " not kept");
+        return (int) (number % results.length);
+    }
+
+    private int intern(String expression) {
+        Integer known = ids.get(expression);
+        int id;
+        if (known != null) {
+            id = known;
+        } else {
+            id = freeIds[--freeCount];
+            texts[id] = expression;
+            ids.put(expression, id);
+        }
+        references[id]++;
+        return id;
+    }
+
+    private void release(int id) {
+        if (--references[id] == 0) {
+            ids.remove(texts[id]);
+            texts[id] = null;
+            freeIds[freeCount++] = id;
+        }
+    }
+}
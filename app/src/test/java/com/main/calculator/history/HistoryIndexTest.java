@@ -0,0 +1,147 @@
+package com.main.calculator.history;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link HistoryIndex}, run on the development machine (host).
+ */
+public class HistoryIndexTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fields_areIndexedSeparately() throws Exception {
+        HistoryIndex index = new HistoryIndex(folder.newFolder());
+        index.add(new HistoryEntry(0, "1.190+2", "3.19"));
+        index.add(new HistoryEntry(0, "1.19x3", "3.57"));
+        index.add(new HistoryEntry(0, "2 - 0.81", "1.19"));
+        assertArrayEquals(new int[]{0}, index.token("1.190"));
+        assertArrayEquals(new int[]{0, 1}, index.literal("1.19"));
+        assertArrayEquals(new int[]{0, 1}, index.literal("1.1900"));
+        assertArrayEquals(new int[]{2}, index.result("1.19"));
+        assertArrayEquals(new int[]{0, 2}, index.literal("2"));
+        assertArrayEquals(new int[]{1}, index.token("x"));
+        assertArrayEquals(new int[]{2}, index.token("-"));
+        assertArrayEquals(new int[0], index.token(" "));
+        assertArrayEquals(new int[0], index.literal("abc"));
+        assertArrayEquals(new int[]{0, 1}, index.resultsBetween(3, 4));
+        index.close();
+    }
+
+    @Test
+    public void queries_matchAScanAcrossSegments() throws Exception {
+        HistoryIndex index = new HistoryIndex(folder.newFolder(), 16);
+        HistoryEntry[] entries = new HistoryEntry[3000];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new HistoryEntry(i, (i % 97) + "x" + (i % 13), String.valueOf((i * 37 % 1000) / 4.0 - 50));
+            index.add(entries[i]);
+        }
+        assertEquals(3000, index.size());
+        for (int n = 0; n < 100; n += 7) {
+            String literal = String.valueOf(n);
+            assertArrayEquals("literal " + n, scan(entries, e -> e.expression().startsWith(literal + "x")
+                    || e.expression().endsWith("x" + literal)), index.literal(literal));
+        }
+        double[][] ranges = {{-50, -40}, {0, 0}, {12.25, 12.25}, {100, 1000}, {-1e9, 1e9}, {5, 4}};
+        for (double[] range : ranges) {
+            assertArrayEquals(Arrays.toString(range), scan(entries, e -> {
+                double value = Double.parseDouble(e.result());
+                return value >= range[0] && value <= range[1];
+            }), index.resultsBetween(range[0], range[1]));
+        }
+        assertArrayEquals(scan(entries, e -> e.result().equals("0.0")), index.result("0"));
+        index.close();
+    }
+
+    @Test
+    public void segments_surviveReopening() throws Exception {
+        File directory = folder.newFolder();
+        HistoryIndex index = new HistoryIndex(directory, 16);
+        for (int i = 0; i < 200; i++) index.add(new HistoryEntry(i, i + "+1", String.valueOf(i + 1)));
+        index.close();
+        // Eight segments merged into one, then four more; the last 8 entries were in memory
+        assertEquals(5, directory.list().length);
+
+        index = new HistoryIndex(directory, 16);
+        assertEquals(192, index.size());
+        assertArrayEquals(new int[]{41}, index.result("42"));
+        assertArrayEquals(new int[]{150}, index.token("150"));
+        index.close();
+    }
+
+    @Test
+    public void leftovers_areRemoved() throws Exception {
+        File directory = folder.newFolder();
+        HistoryIndex index = new HistoryIndex(directory, 16);
+        for (int i = 0; i < 32; i++) index.add(new HistoryEntry(i, "1+1", "2"));
+        index.close();
+        assertTrue(new File(directory, "0-16.seg.tmp").createNewFile());     // Interrupted write
+        assertTrue(new File(directory, "0-8.seg").createNewFile());          // Inside another segment
+        assertTrue(new File(directory, "64-16.seg").createNewFile());        // After a gap
+
+        index = new HistoryIndex(directory, 16);
+        assertEquals(32, index.size());
+        String[] names = directory.list();
+        Arrays.sort(names);
+        assertArrayEquals(new String[]{"0-16.seg", "16-16.seg"}, names);
+        index.close();
+    }
+
+    @Test
+    public void clear_removesEverything() throws Exception {
+        File directory = folder.newFolder();
+        HistoryIndex index = new HistoryIndex(directory, 16);
+        for (int i = 0; i < 40; i++) index.add(new HistoryEntry(i, "1+1", "2"));
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(0, directory.list().length);
+        index.add(new HistoryEntry(0, "2+2", "4"));
+        assertArrayEquals(new int[]{0}, index.result("4"));
+        assertArrayEquals(new int[0], index.result("2"));
+        index.close();
+    }
+
+    @Test
+    public void corruptPostings_areReportedAsIOException() throws Exception {
+        File directory = folder.newFolder();
+        HistoryIndex index = new HistoryIndex(directory, 1);
+        index.add(new HistoryEntry(0, "1+1", "2"));
+        index.close();
+        File file = new File(directory, "0-1.seg");
+        IndexSegment segment = new IndexSegment(file);
+        String term;
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(raw.length() - 56); // The trailer, starting with the dictionary offset
+            raw.seek(raw.readLong());
+            term = raw.readUTF();
+            raw.readByte();                                        // Postings count
+            raw.readByte();                                        // Postings offset
+            raw.write(new byte[]{-1, -1, -1, -1, 0x0F});           // Postings length -1, after the segment opened
+        }
+        assertThrows(IOException.class, () -> segment.postings(term, new IntList()));
+        segment.close();
+    }
+
+    private interface Filter {
+        boolean test(HistoryEntry entry);
+    }
+
+    private static int[] scan(HistoryEntry[] entries, Filter filter) {
+        int[] records = new int[entries.length];
+        int count = 0;
+        for (int i = 0; i < entries.length; i++) {
+            if (filter.test(entries[i])) records[count++] = i;
+        }
+        return Arrays.copyOf(records, count);
+    }
+}
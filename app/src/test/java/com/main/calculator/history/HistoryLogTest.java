@@ -0,0 +1,294 @@
+package com.main.calculator.history;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link HistoryLog}, run on the development machine (host).
+ */
+public class HistoryLogTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void entries_surviveReopening() throws Exception {
+        File file = folder.newFile();
+        HistoryLog log = new HistoryLog(file);
+        log.append(new HistoryEntry(1, "1+2", "3"));
+        log.append(new HistoryEntry(2, "0.1+0.2", "0.3"));
+        log.append(new HistoryEntry(3, "1/0", "Error"));
+        log.flush();
+        log.close();
+
+        List<HistoryEntry> entries = readAll(new HistoryLog(file));
+        assertEquals(3, entries.size());
+        assertEquals("1+2 = 3", entries.get(0).toString());
+        assertEquals(2, entries.get(1).timestamp());
+        assertEquals("0.1+0.2", entries.get(1).expression());
+        assertEquals("Error", entries.get(2).result());
+    }
+
+    @Test
+    public void reads_seeEarlierAppends() throws Exception {
+        HistoryLog log = new HistoryLog(folder.newFile());
+        assertTrue(readAll(log).isEmpty());
+        for (int i = 0; i < 1000; i++) log.append(new HistoryEntry(i, i + "x2", String.valueOf(i * 2)));
+        List<HistoryEntry> entries = readAll(log); // Queued behind the appends, no flush needed
+        assertEquals(1000, entries.size());
+        assertEquals("999x2 = 1998", entries.get(999).toString());
+        log.close();
+    }
+
+    @Test
+    public void tornTail_isCutOff() throws Exception {
+        File file = folder.newFile();
+        HistoryLog log = new HistoryLog(file);
+        log.append(new HistoryEntry(1, "1+1", "2"));
+        log.append(new HistoryEntry(2, "2+2", "4"));
+        log.close();
+        long intact = file.length();
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.setLength(intact - 3); // Crash in the middle of the second record
+        }
+
+        log = new HistoryLog(file);
+        assertEquals(1, readAll(log).size());
+        log.append(new HistoryEntry(3, "3+3", "6"));
+        List<HistoryEntry> entries = readAll(log);
+        assertEquals(2, entries.size());
+        assertEquals("3+3 = 6", entries.get(1).toString());
+        log.close();
+    }
+
+    @Test
+    public void corruptRecord_endsTheLog() throws Exception {
+        File file = folder.newFile();
+        HistoryLog log = new HistoryLog(file);
+        log.append(new HistoryEntry(1, "1+1", "2"));
+        log.append(new HistoryEntry(2, "2+2", "4"));
+        log.append(new HistoryEntry(3, "3+3", "6"));
+        log.close();
+        long second = HistoryLog.HEADER_SIZE + HistoryLog.RECORD_HEADER_SIZE + 12 + 3 + 1;
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(second + HistoryLog.RECORD_HEADER_SIZE + 8);
+            raw.write(0x7f); // Flip bits inside the second payload
+        }
+
+        List<HistoryEntry> entries = readAll(new HistoryLog(file));
+        assertEquals(1, entries.size());
+        assertEquals(second, file.length());
+    }
+
+    @Test
+    public void foreignFile_isReplaced() throws Exception {
+        File file = folder.newFile();
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.writeBytes("not a history log");
+        }
+        HistoryLog log = new HistoryLog(file);
+        assertTrue(readAll(log).isEmpty());
+        log.append(new HistoryEntry(1, "1+1", "2"));
+        log.close();
+        assertEquals(1, readAll(new HistoryLog(file)).size());
+    }
+
+    @Test
+    public void unicodeText_roundTrips() throws Exception {
+        File file = folder.newFile();
+        HistoryLog log = new HistoryLog(file);
+        log.append(new HistoryEntry(1, "2\u00d73\u00f74", "1.5"));
+        log.append(new HistoryEntry(2, "", ""));
+        log.close();
+        List<HistoryEntry> entries = readAll(new HistoryLog(file));
+        assertEquals("2\u00d73\u00f74", entries.get(0).expression());
+        assertEquals(" = ", entries.get(1).toString());
+    }
+
+    @Test
+    public void oversizedEntry_isCutToFit() throws Exception {
+        File file = folder.newFile();
+        HistoryLog log = new HistoryLog(file);
+        StringBuilder expression = new StringBuilder();
+        while (expression.length() < HistoryLog.MAX_PAYLOAD) expression.append('\u00f7'); // Two bytes in UTF-8
+        log.append(new HistoryEntry(1, expression.toString(), "2"));
+        log.append(new HistoryEntry(2, "2+2", "4"));
+        log.flush();
+        log.close();
+
+        List<HistoryEntry> entries = readAll(new HistoryLog(file));
+        assertEquals(2, entries.size());
+        // Room for MAX_PAYLOAD - 13 bytes, an odd number, so the cut falls inside the last character
+        assertEquals((HistoryLog.MAX_PAYLOAD - 14) / 2, entries.get(0).expression().length());
+        assertTrue(expression.toString().startsWith(entries.get(0).expression()));
+        assertEquals("2", entries.get(0).result());
+        assertEquals("2+2 = 4", entries.get(1).toString());
+    }
+
+    @Test
+    public void failingCallback_leavesTheLogRunning() throws Exception {
+        CompletableFuture<Throwable> reported = new CompletableFuture<>();
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> reported.complete(e));
+        try {
+            HistoryLog log = new HistoryLog(folder.newFile());
+            log.readAll(entries -> {
+                throw new IllegalStateException("Callback failed");
+            });
+            assertEquals("Callback failed", reported.get(10, TimeUnit.SECONDS).getMessage());
+            log.append(new HistoryEntry(1, "1+1", "2"));
+            log.flush();
+            assertEquals(1, readAll(log).size());
+            log.close();
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+
+    @Test
+    public void badEntry_isDroppedAlone() throws Exception {
+        File file = folder.newFile();
+        HistoryLog log = new HistoryLog(file);
+        log.append(new HistoryEntry(1, "1+1", "2"));
+        log.append(new HistoryEntry(2, null, "3"));
+        log.append(new HistoryEntry(3, "3+3", "6"));
+        assertThrows(IOException.class, log::flush);
+        log.flush(); // Reported once
+        log.close();
+
+        List<HistoryEntry> entries = readAll(new HistoryLog(file));
+        assertEquals(2, entries.size());
+        assertEquals("3+3 = 6", entries.get(1).toString());
+    }
+
+    @Test
+    public void pages_seekThroughTheIndex() throws Exception {
+        File file = folder.newFile();
+        HistoryLog log = new HistoryLog(file);
+        for (int i = 0; i < 1000; i++) log.append(new HistoryEntry(i, i + "+0", String.valueOf(i)));
+        log.close();
+
+        log = new HistoryLog(file);
+        Page page = readPage(log, 130, 50);
+        assertEquals(1000, page.total);
+        assertEquals(50, page.entries.size());
+        assertEquals("130+0 = 130", page.entries.get(0).toString());
+        assertEquals("179+0 = 179", page.entries.get(49).toString());
+        assertEquals(10, readPage(log, 990, 50).entries.size());
+        assertTrue(readPage(log, 1000, 50).entries.isEmpty());
+        assertEquals(1000, readPage(log, 0, 0).total);
+        log.close();
+    }
+
+    @Test
+    public void pages_seeEarlierAppends() throws Exception {
+        HistoryLog log = new HistoryLog(folder.newFile());
+        assertEquals(0, readPage(log, 0, 10).total);
+        for (int i = 0; i < 70; i++) log.append(new HistoryEntry(i, i + "+0", String.valueOf(i)));
+        Page page = readPage(log, 63, 10);
+        assertEquals(70, page.total);
+        assertEquals(7, page.entries.size());
+        assertEquals(63, page.entries.get(0).timestamp());
+        assertEquals(69, page.entries.get(6).timestamp());
+        log.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pages_rejectNegativeRanges() throws Exception {
+        HistoryLog log = new HistoryLog(folder.newFile());
+        try {
+            log.readPage(-1, 10, (total, first, entries) -> { });
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void search_findsAppendedEntries() throws Exception {
+        File file = folder.newFile();
+        File index = folder.newFolder();
+        HistoryLog log = new HistoryLog(file, index);
+        log.append(new HistoryEntry(1, "1.19x2", "2.38"));
+        log.append(new HistoryEntry(2, "3-1.81", "1.19"));
+        assertArrayEquals(new int[]{0}, search(log, i -> i.literal("1.19")));
+        assertArrayEquals(new int[]{1}, search(log, i -> i.result("1.190")));
+        assertArrayEquals(new int[]{0, 1}, search(log, i -> i.resultsBetween(1, 3)));
+        log.close();
+    }
+
+    @Test
+    public void failingQuery_findsNothing() throws Exception {
+        CompletableFuture<Throwable> reported = new CompletableFuture<>();
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> reported.complete(e));
+        try {
+            HistoryLog log = new HistoryLog(folder.newFile(), folder.newFolder());
+            log.append(new HistoryEntry(1, "1+1", "2"));
+            assertEquals(0, search(log, i -> {
+                throw new IllegalStateException("Query failed");
+            }).length);
+            assertEquals("Query failed", reported.get(10, TimeUnit.SECONDS).getMessage());
+            assertArrayEquals(new int[]{0}, search(log, i -> i.result("2"))); // The index is kept
+            log.close();
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+
+    @Test
+    public void index_isRebuiltFromTheLog() throws Exception {
+        File file = folder.newFile();
+        File index = folder.newFolder();
+        HistoryLog log = new HistoryLog(file, index);
+        for (int i = 0; i < 5000; i++) log.append(new HistoryEntry(i, i + "+0", String.valueOf(i)));
+        log.close();
+        for (File segment : index.listFiles()) assertTrue(segment.delete());
+
+        log = new HistoryLog(file, index);
+        assertArrayEquals(new int[]{4321}, search(log, i -> i.result("4321")));
+        assertEquals(5000, search(log, i -> i.token("+")).length);
+        log.close();
+
+        HistoryLog unindexed = new HistoryLog(file);
+        assertEquals(0, search(unindexed, i -> i.token("+")).length);
+        unindexed.close();
+    }
+
+    private static int[] search(HistoryLog log, HistoryIndex.Query query) throws Exception {
+        CompletableFuture<int[]> records = new CompletableFuture<>();
+        log.search(query, records::complete);
+        return records.get(10, TimeUnit.SECONDS);
+    }
+
+    private static final class Page {
+        int total;
+        List<HistoryEntry> entries;
+    }
+
+    private static Page readPage(HistoryLog log, int first, int count) throws Exception {
+        CompletableFuture<Page> page = new CompletableFuture<>();
+        log.readPage(first, count, (total, start, entries) -> {
+            Page read = new Page();
+            read.total = total;
+            read.entries = entries;
+            page.complete(read);
+        });
+        return page.get(10, TimeUnit.SECONDS);
+    }
+
+    private static List<HistoryEntry> readAll(HistoryLog log) throws Exception {
+        CompletableFuture<List<HistoryEntry>> entries = new CompletableFuture<>();
+        log.readAll(entries::complete);
+        return entries.get(10, TimeUnit.SECONDS);
+    }
+}
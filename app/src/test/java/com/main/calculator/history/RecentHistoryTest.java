@@ -0,0 +1,69 @@
+package com.main.calculator.history;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RecentHistory}, run on the development machine (host).
+ */
+public class RecentHistoryTest {
+
+    @Test
+    public void calculations_areKeptInOrder() {
+        RecentHistory history = new RecentHistory(4);
+        history.add(10, "1+2", 3);
+        history.add(20, "0.1+0.2", 0.3);
+        assertEquals(2, history.size());
+        assertEquals(2, history.added());
+        assertEquals("1+2", history.expression(0));
+        assertEquals(3, history.result(0), 0);
+        assertEquals(20, history.timestamp(1));
+        assertEquals(0.3, history.result(1), 0);
+        assertFalse(history.contains(2));
+    }
+
+    @Test
+    public void oldest_isForgottenWhenFull() {
+        RecentHistory history = new RecentHistory(3);
+        for (int i = 0; i < 10; i++) history.add(i, i + "x2", i * 2);
+        assertEquals(3, history.size());
+        assertEquals(10, history.added());
+        assertFalse(history.contains(6));
+        assertTrue(history.contains(7));
+        assertEquals("7x2", history.expression(7));
+        assertEquals(18, history.result(9), 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void forgotten_cannotBeRead() {
+        RecentHistory history = new RecentHistory(2);
+        for (int i = 0; i < 3; i++) history.add(i, "1", 1);
+        history.expression(0);
+    }
+
+    @Test
+    public void repeatedExpressions_shareOneString() {
+        RecentHistory history = new RecentHistory(100);
+        String first = "12/4";
+        history.add(0, first, 3);
+        for (int i = 1; i < 100; i++) history.add(i, new String("12/4"), 3);
+        assertSame(first, history.expression(99));
+    }
+
+    @Test
+    public void expressionIds_areReused() {
+        RecentHistory history = new RecentHistory(2);
+        // Every expression is distinct, so ids must be recycled as records are overwritten
+        for (int i = 0; i < 1000; i++) history.add(i, "1+" + i, i + 1);
+        assertEquals("1+998", history.expression(998));
+        assertEquals("1+999", history.expression(999));
+        history.clear();
+        assertEquals(0, history.size());
+        history.add(0, "2+2", 4);
+        history.add(1, "2+2", 4);
+        history.add(2, "3+3", 6);
+        assertEquals("2+2", history.expression(1001));
+        assertEquals("3+3", history.expression(1002));
+    }
+}
@@ -0,0 +1,34 @@
+plugins {
+    alias(libs.plugins.android.test)
+    alias(libs.plugins.androidx.baselineprofile)
+}
+
+android {
+    namespace = "com.main.calculator.baselineprofile"
+    compileSdk = 35
+
+    defaultConfig {
+        minSdk = 28 // Profile collection needs API 28 or later; the app itself still supports 24
+        targetSdk = 35
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    targetProjectPath = ":app"
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+}
+
+// Collects on a connected device or emulator: ./gradlew :app:generateBaselineProfile
+baselineProfile {
+    useConnectedDevices = true
+}
+
+dependencies {
+
+    implementation(libs.ext.junit)
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+}
@@ -0,0 +1,55 @@
+package com.main.calculator.baselineprofile;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Collects the app's baseline profile from a typical session: startup,
+ * digit and operator entry, {@code =} and clear.
+ *
+ * <p>Run with {@code ./gradlew :app:generateBaselineProfile}; the profile is
+ * written to {@code app/src/release/generated/baselineProfiles} and packaged
+ * into the APK for ProfileInstaller.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    private static final String PACKAGE_NAME = "com.main.calculator";
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    // 12.5 + 7 * 3 / 4 - 9 = then 0 - 6 = to cover the negative result path
+    private static final String[] KEYS = {
+            "btn_1", "btn_2", "btn_dot", "btn_5", "btn_add", "btn_7", "btn_multiply", "btn_3",
+            "btn_divide", "btn_4", "btn_subtract", "btn_9", "btn_equals", "btn_clear",
+            "btn_0", "btn_subtract", "btn_6", "btn_equals", "btn_clear"
+    };
+
+    @Rule
+    public final BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(PACKAGE_NAME, scope -> {
+            scope.pressHome();
+            scope.startActivityAndWait();
+            UiDevice device = scope.getDevice();
+            for (String key : KEYS) {
+                UiObject2 button = device.wait(Until.findObject(By.res(PACKAGE_NAME, key)), TIMEOUT_MILLIS);
+                if (button == null) throw new IllegalStateException("Button not found: " + key);
+                button.click();
+                device.waitForIdle();
+            }
+            return Unit.INSTANCE;
+        });
+    }
+}
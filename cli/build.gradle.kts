@@ -0,0 +1,18 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+application {
+    mainClass.set("com.main.calculator.cli.Main")
+}
+
+dependencies {
+
+    implementation(project(":engine"))
+    testImplementation(libs.junit)
+}
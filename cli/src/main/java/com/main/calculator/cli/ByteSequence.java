@@ -0,0 +1,54 @@
+package com.main.calculator.cli;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable {@link CharSequence} view of a range of ASCII bytes in a
+ * buffer, so lines can be handed to the engine without decoding them into
+ * Strings. Bytes outside ASCII map to Latin-1 characters, which the lexer
+ * rejects.
+ */
+final class ByteSequence implements CharSequence {
+
+    private ByteBuffer buffer;
+    private int start;
+    private int length;
+
+    /**
+     * Points this view at a new range.
+     *
+     * @param buffer The buffer holding the bytes.
+     * @param start  Absolute index of the first byte.
+     * @param end    Absolute index one past the last byte.
+     * @return This view.
+     */
+    ByteSequence wrap(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.length = end - start;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index);
+        return (char) (buffer.get(start + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) chars[i] = charAt(i);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,166 @@
+package com.main.calculator.cli;
+
+import com.main.calculator.engine.DisplayFormat;
+import com.main.calculator.engine.Engine;
+
+import java.io.IOException;
+import java.math.MathContext;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Evaluates a newline-delimited file of expressions and writes one result
+ * line per input line, in order.
+ *
+ * <p>The input is memory-mapped a window at a time and each line is lexed
+ * straight from the mapped bytes, so memory use stays constant however
+ * large the file is. A line that straddles the end of a window is re-read
+ * from the start of the next one. Results are collected in a direct buffer
+ * and written to the output channel whenever it fills up.
+ *
+ * <p>Results are formatted as the calculator displays them. Lines that fail
+ * to evaluate produce {@code Error} and empty lines produce empty lines, so
+ * output line N always belongs to input line N.
+ */
+final class ExpressionFileEvaluator {
+
+    /**
+     * How each line is evaluated.
+     */
+    enum Mode {
+        DOUBLE,   // Engine#evaluate, formatted at the display precision
+        DECIMAL,  // Engine#evaluateDecimal
+        RATIONAL  // Engine#evaluateRational, as the calculator's = key does
+    }
+
+    static final long DEFAULT_WINDOW = 64L << 20; // Bytes mapped at a time
+
+    private static final int OUTPUT_CAPACITY = 1 << 16;
+    private static final byte[] ERROR = {'E', 'r', 'r', 'o', 'r'};
+
+    private final Engine engine;
+    private final MathContext mathContext;
+    private final Mode mode;
+    private final long window;
+    private final ByteSequence line = new ByteSequence();
+    private final ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_CAPACITY);
+    private WritableByteChannel target;
+    private long lines;  // Lines evaluated so far
+    private long errors; // Lines that failed so far
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param engine      The engine to evaluate with.
+     * @param mathContext The precision to round results to.
+     * @param mode        The number mode to evaluate in.
+     * @param window      The number of input bytes to map at a time; also the longest allowed line.
+     */
+    ExpressionFileEvaluator(Engine engine, MathContext mathContext, Mode mode, long window) {
+        this.engine = engine;
+        this.mathContext = mathContext;
+        this.mode = mode;
+        this.window = window;
+    }
+
+    /**
+     * Evaluates every line of the input.
+     *
+     * @param input  The file to read.
+     * @param target The channel to write results to.
+     * @throws IOException If reading or writing fails, or a line is longer than the window.
+     */
+    void evaluate(FileChannel input, WritableByteChannel target) throws IOException {
+        this.target = target;
+        long size = input.size();
+        long position = 0;
+        while (position < size) {
+            int length = (int) Math.min(window, size - position);
+            MappedByteBuffer buffer = input.map(FileChannel.MapMode.READ_ONLY, position, length);
+            boolean last = position + length == size;
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == '\n') {
+                    evaluateLine(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if (last) {
+                if (lineStart < length) evaluateLine(buffer, lineStart, length);
+                position = size;
+            } else if (lineStart == 0) {
+                throw new IOException("Line at byte " + position + " is longer than " + window + " bytes");
+            } else {
+                position += lineStart; // Re-map from the start of the unfinished line
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Returns the number of lines evaluated.
+     */
+    long lines() {
+        return lines;
+    }
+
+    /**
+     * Returns the number of lines that failed to evaluate.
+     */
+    long errors() {
+        return errors;
+    }
+
+    private void evaluateLine(ByteBuffer buffer, int start, int end) throws IOException {
+        if (end > start && buffer.get(end - 1) == '\r') end--;
+        lines++;
+        if (end > start) {
+            String result;
+            try {
+                result = format(line.wrap(buffer, start, end));
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                result = null;
+            }
+            if (result == null) {
+                errors++;
+                write(ERROR);
+            } else {
+                write(result);
+            }
+        }
+        if (!output.hasRemaining()) flush();
+        output.put((byte) '\n');
+    }
+
+    private String format(CharSequence expression) {
+        switch (mode) {
+            case DOUBLE:
+                return DisplayFormat.format(engine.evaluate(expression), mathContext);
+            case DECIMAL:
+                return DisplayFormat.format(engine.evaluateDecimal(expression));
+            default:
+                return DisplayFormat.format(engine.evaluateRational(expression).toBigDecimal(mathContext));
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        if (output.remaining() < bytes.length) flush();
+        output.put(bytes);
+    }
+
+    private void write(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (!output.hasRemaining()) flush();
+            output.put((byte) text.charAt(i)); // Results are always ASCII
+        }
+    }
+
+    private void flush() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) target.write(output);
+        output.clear();
+    }
+}
@@ -0,0 +1,75 @@
+package com.main.calculator.cli;
+
+import com.main.calculator.engine.DivisionByZero;
+import com.main.calculator.engine.Engine;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.MathContext;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Command-line entry point that evaluates a file of expressions, one per
+ * line, the same way the calculator's {@code =} key does.
+ *
+ * <pre>
+ * ./gradlew :cli:run --args="[--mode rational|decimal|double] input [output]"
+ * </pre>
+ *
+ * <p>Results go to the output file, or to standard output if none is
+ * given, and a summary of the line and error counts is printed to
+ * standard error.
+ */
+public final class Main {
+
+    private static final MathContext PRECISION = MathContext.DECIMAL64; // Same as the calculator display
+
+    private Main() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        ExpressionFileEvaluator.Mode mode = ExpressionFileEvaluator.Mode.RATIONAL;
+        int next = 0;
+        if (args.length >= 2 && args[0].equals("--mode")) {
+            try {
+                mode = ExpressionFileEvaluator.Mode.valueOf(args[1].toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                usage();
+                return;
+            }
+            next = 2;
+        }
+        if (args.length - next < 1 || args.length - next > 2) {
+            usage();
+            return;
+        }
+
+        ExpressionFileEvaluator evaluator = new ExpressionFileEvaluator(
+                new Engine(DivisionByZero.THROW, PRECISION), PRECISION, mode,
+                ExpressionFileEvaluator.DEFAULT_WINDOW);
+        long started = System.nanoTime();
+        try (FileChannel input = FileChannel.open(Paths.get(args[next]), StandardOpenOption.READ);
+             WritableByteChannel output = open(args.length - next == 2 ? Paths.get(args[next + 1]) : null)) {
+            evaluator.evaluate(input, output);
+        }
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        System.err.printf("%,d lines, %,d errors, %,d ms%n", evaluator.lines(), evaluator.errors(), millis);
+    }
+
+    private static WritableByteChannel open(Path path) throws IOException {
+        if (path == null) return new FileOutputStream(FileDescriptor.out).getChannel();
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void usage() {
+        System.err.println("usage: [--mode rational|decimal|double] input [output]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,71 @@
+package com.main.calculator.cli;
+
+import com.main.calculator.engine.DivisionByZero;
+import com.main.calculator.engine.Engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.MathContext;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ExpressionFileEvaluator}, run on the development machine (host).
+ */
+public class ExpressionFileEvaluatorTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void eachLine_isEvaluated() throws IOException {
+        assertEquals("3\n0.3\n1\nError\n\nError\n-1.5\n",
+                evaluate("1+2\n0.1+0.2\r\n1/3x3\n1/0\n\n(1\n-(3/2)", ExpressionFileEvaluator.Mode.RATIONAL, 1 << 20));
+    }
+
+    @Test
+    public void linesAcrossWindows_areReassembled() throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            input.append(i).append(" x 2 + 1\n");
+            expected.append(i * 2 + 1).append('\n');
+        }
+        for (int window : new int[]{16, 17, 64, 1000}) {
+            assertEquals(expected.toString(), evaluate(input.toString(), ExpressionFileEvaluator.Mode.DOUBLE, window));
+        }
+    }
+
+    @Test
+    public void numberModes_matchTheEngine() throws IOException {
+        assertEquals("0.3\n", evaluate("0.1+0.2", ExpressionFileEvaluator.Mode.DOUBLE, 64));
+        assertEquals("0.3333333333333333\n", evaluate("1/3", ExpressionFileEvaluator.Mode.DECIMAL, 64));
+    }
+
+    @Test(expected = IOException.class)
+    public void lineLongerThanWindow_isRejected() throws IOException {
+        evaluate("1+2+3+4+5+6+7+8+9\n1", ExpressionFileEvaluator.Mode.DOUBLE, 8);
+    }
+
+    private String evaluate(String input, ExpressionFileEvaluator.Mode mode, int window) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), input.getBytes(StandardCharsets.US_ASCII));
+        ExpressionFileEvaluator evaluator = new ExpressionFileEvaluator(
+                new Engine(DivisionByZero.THROW, MathContext.DECIMAL64), MathContext.DECIMAL64, mode, window);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            evaluator.evaluate(channel, Channels.newChannel(output));
+        }
+        return new String(output.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,22 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+
+    testImplementation(libs.junit)
+}
+
+// JMH benchmarks in src/jmh, e.g. ./gradlew :engine:jmh -PjmhIncludes=CompactExpression
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
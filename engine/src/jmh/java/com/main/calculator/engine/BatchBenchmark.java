@@ -0,0 +1,57 @@
+package com.main.calculator.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how {@link Engine#evaluateAll} scales with the number of worker
+ * threads on a batch of 100,000 distinct expressions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    private static final int BATCH_SIZE = 100_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private final CharSequence[] expressions = new CharSequence[BATCH_SIZE];
+    private final Engine engine = new Engine();
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            expressions[i] = Expressions.compact(8, 2, i);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public BatchResult evaluateAll() {
+        return engine.evaluateAll(expressions, pool);
+    }
+}
@@ -0,0 +1,85 @@
+package com.main.calculator.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexes, compiles and evaluates {@code MainAppII} style expressions (no
+ * spaces, with {@code %} and nested parentheses) with the engine and with
+ * the evaluator the screen used before it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompactExpressionBenchmark {
+
+    @Param({"8", "64", "512"})
+    public int operands;
+
+    @Param({"0", "4", "16"})
+    public int depth;
+
+    private String expression;
+    private final Lexer lexer = new Lexer();
+    private final Parser parser = new Parser();
+    private final Optimizer optimizer = new Optimizer();
+    private final Engine engine = new Engine(DivisionByZero.THROW);
+    private Program program;
+    private double[] stack;
+
+    @Setup
+    public void setUp() {
+        expression = Expressions.compact(operands, depth, 1);
+        program = parser.parse(expression);
+        stack = new double[program.frameSize];
+    }
+
+    @Benchmark
+    public double legacyLex() {
+        return LegacyEvaluators.lexCompact(expression);
+    }
+
+    @Benchmark
+    public double lex() {
+        return Expressions.lex(lexer, expression);
+    }
+
+    @Benchmark
+    public Program compile() {
+        return parser.parse(expression);
+    }
+
+    @Benchmark
+    public Program optimize() {
+        return optimizer.optimize(parser.parse(expression));
+    }
+
+    @Benchmark
+    public double execute() {
+        return program.execute(stack, DivisionByZero.THROW);
+    }
+
+    @Benchmark
+    public double legacyEvaluate() {
+        return LegacyEvaluators.evaluateCompact(expression);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return engine.evaluate(expression);
+    }
+}
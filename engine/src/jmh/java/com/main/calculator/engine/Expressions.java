@@ -0,0 +1,90 @@
+package com.main.calculator.engine;
+
+import java.util.Random;
+
+/**
+ * Deterministic expression generators for the benchmarks, one per input
+ * style the calculator screens produce.
+ */
+final class Expressions {
+
+    private Expressions() {
+    }
+
+    /**
+     * Builds a {@code MainActivity} style expression: numbers and the
+     * operators {@code + - * /} separated by single spaces, no parentheses.
+     *
+     * @param operands The number of operands.
+     * @param seed     Seed for the random operands and operators.
+     * @return The expression.
+     */
+    static String spaced(int operands, long seed) {
+        Random random = new Random(seed);
+        char[] symbols = {'+', '-', '*', '/'};
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < operands; i++) {
+            if (i > 0) expression.append(' ').append(symbols[random.nextInt(symbols.length)]).append(' ');
+            appendOperand(expression, random);
+        }
+        return expression.toString();
+    }
+
+    /**
+     * Builds a {@code MainAppII} style expression: no spaces, the operators
+     * {@code + - x / %} and parentheses nested exactly {@code depth} deep.
+     * Divisors are always non-zero literals, so the expression never
+     * divides by zero.
+     *
+     * @param operands The number of operands.
+     * @param depth    The deepest nesting of parentheses.
+     * @param seed     Seed for the random operands, operators and groups.
+     * @return The expression.
+     */
+    static String compact(int operands, int depth, long seed) {
+        Random random = new Random(seed);
+        char[] symbols = {'+', '-', 'x', '/', '%'};
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < depth; i++) expression.append('(');
+        int open = depth;
+        for (int i = 0; i < operands; i++) {
+            if (i > 0) {
+                char symbol = symbols[random.nextInt(symbols.length)];
+                expression.append(symbol);
+                if (symbol != '/' && symbol != '%' && open < depth && random.nextInt(4) == 0) {
+                    expression.append('(');
+                    open++;
+                }
+            }
+            appendOperand(expression, random);
+            if (open > 0 && random.nextInt(3) == 0) {
+                expression.append(')');
+                open--;
+            }
+        }
+        for (; open > 0; open--) expression.append(')');
+        return expression.toString();
+    }
+
+    /**
+     * Runs the lexer over an expression, the way the parser drives it.
+     *
+     * @param lexer      The lexer to reuse.
+     * @param expression The expression to scan.
+     * @return A value derived from every token, for the benchmark to consume.
+     */
+    static double lex(Lexer lexer, CharSequence expression) {
+        lexer.reset(expression);
+        double sum = 0;
+        int type;
+        while ((type = lexer.next()) != Lexer.END) {
+            sum += type == Lexer.NUMBER ? lexer.number() : lexer.operator();
+        }
+        return sum;
+    }
+
+    private static void appendOperand(StringBuilder expression, Random random) {
+        expression.append(random.nextInt(99) + 1);
+        if (random.nextBoolean()) expression.append('.').append(random.nextInt(100));
+    }
+}
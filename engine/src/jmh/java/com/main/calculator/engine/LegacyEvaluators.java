@@ -0,0 +1,185 @@
+package com.main.calculator.engine;
+
+import java.util.Stack;
+
+/**
+ * The evaluators both calculator screens used before the engine existed,
+ * kept as baselines for the benchmarks.
+ */
+final class LegacyEvaluators {
+
+    private LegacyEvaluators() {
+    }
+
+    /**
+     * The {@code MainActivity} token path: split on spaces, then two regex matches per token.
+     *
+     * @param expression A space separated expression.
+     * @return A value derived from every token, for the benchmark to consume.
+     */
+    static double lexSpaced(String expression) {
+        double sum = 0;
+        for (String token : expression.split(" ")) {
+            if (token.matches("\\d+(\\.\\d+)?")) {
+                sum += Double.parseDouble(token);
+            } else if (token.matches("[+\\-*/]")) {
+                sum += token.charAt(0);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * The {@code MainActivity} evaluator: the token path above feeding two {@code Stack}s.
+     *
+     * @param expression A space separated expression.
+     * @return The result.
+     */
+    static double evaluateSpaced(String expression) {
+        Stack<Double> numbers = new Stack<>();
+        Stack<String> operators = new Stack<>();
+
+        for (String token : expression.split(" ")) {
+            if (token.matches("\\d+(\\.\\d+)?")) {
+                numbers.push(Double.parseDouble(token));
+            } else if (token.matches("[+\\-*/]")) {
+                while (!operators.isEmpty() && spacedPrecedence(operators.peek()) >= spacedPrecedence(token)) {
+                    spacedCalculation(numbers, operators.pop());
+                }
+                operators.push(token);
+            }
+        }
+
+        while (!operators.isEmpty()) {
+            spacedCalculation(numbers, operators.pop());
+        }
+        return numbers.pop();
+    }
+
+    /**
+     * The {@code MainAppII} number scanner: digits collected into a {@code StringBuilder} and parsed.
+     *
+     * @param expression A compact expression.
+     * @return A value derived from every token, for the benchmark to consume.
+     */
+    static double lexCompact(String expression) {
+        double sum = 0;
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (Character.isDigit(c) || c == '.') {
+                StringBuilder num = new StringBuilder();
+                while (i < expression.length() && (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
+                    num.append(expression.charAt(i));
+                    i++;
+                }
+                sum += Double.parseDouble(num.toString());
+            } else {
+                sum += c;
+                i++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * The {@code MainAppII} evaluator: the scanner above feeding two {@code Stack}s.
+     *
+     * @param expression A compact expression.
+     * @return The result.
+     */
+    static double evaluateCompact(String expression) {
+        Stack<Double> numbers = new Stack<>();
+        Stack<Character> operators = new Stack<>();
+
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+
+            if (Character.isDigit(c) || c == '.') {
+                StringBuilder num = new StringBuilder();
+                while (i < expression.length() && (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
+                    num.append(expression.charAt(i));
+                    i++;
+                }
+                numbers.push(Double.parseDouble(num.toString()));
+            } else if (c == '(') {
+                operators.push(c);
+                i++;
+            } else if (c == ')') {
+                while (!operators.isEmpty() && operators.peek() != '(') {
+                    numbers.push(compactApply(operators.pop(), numbers.pop(), numbers.pop()));
+                }
+                operators.pop();
+                i++;
+            } else if ("+-x/%".indexOf(c) >= 0) {
+                while (!operators.isEmpty() && compactPrecedence(operators.peek()) >= compactPrecedence(c)) {
+                    numbers.push(compactApply(operators.pop(), numbers.pop(), numbers.pop()));
+                }
+                operators.push(c);
+                i++;
+            } else {
+                i++;
+            }
+        }
+
+        while (!operators.isEmpty()) {
+            numbers.push(compactApply(operators.pop(), numbers.pop(), numbers.pop()));
+        }
+        return numbers.pop();
+    }
+
+    private static int spacedPrecedence(String operator) {
+        switch (operator) {
+            case "*": return 2;
+            case "/": return 2;
+            case "+": return 1;
+            case "-": return 1;
+            default: return 0;
+        }
+    }
+
+    private static void spacedCalculation(Stack<Double> numbers, String operator) {
+        if (numbers.size() < 2) return;
+
+        double b = numbers.pop();
+        double a = numbers.pop();
+        double result = 0;
+
+        switch (operator) {
+            case "+": result = a + b; break;
+            case "-": result = a - b; break;
+            case "/": result = (b == 0) ? 0 : a / b; break;
+            case "*": result = a * b; break;
+        }
+
+        numbers.push(result);
+    }
+
+    private static int compactPrecedence(char operator) {
+        switch (operator) {
+            case '+':
+            case '-':
+                return 1;
+            case 'x':
+            case '/':
+            case '%':
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    private static double compactApply(char operator, double b, double a) {
+        switch (operator) {
+            case '+': return a + b;
+            case '-': return a - b;
+            case 'x': return a * b;
+            case '/':
+                if (b == 0) throw new ArithmeticException("Division by zero");
+                return a / b;
+            case '%': return a % b;
+            default: throw new IllegalArgumentException("Invalid operator: " + operator);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.main.calculator.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates one typical calculator expression with small operands in each
+ * number mode: {@code double}, exact decimal and exact rational.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NumberModeBenchmark {
+
+    private static final String EXPRESSION = "(12.5 + 3) x 4 - 7 / 2 % 3 - -1.25 + 1 / 3 x 3";
+
+    private final Engine engine = new Engine();
+
+    @Benchmark
+    public double evaluateDouble() {
+        return engine.evaluate(EXPRESSION);
+    }
+
+    @Benchmark
+    public BigDecimal evaluateDecimal() {
+        return engine.evaluateDecimal(EXPRESSION);
+    }
+
+    @Benchmark
+    public Rational evaluateRational() {
+        return engine.evaluateRational(EXPRESSION);
+    }
+}
@@ -0,0 +1,76 @@
+package com.main.calculator.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexes, compiles and evaluates {@code MainActivity} style expressions
+ * (space separated, no parentheses) with the engine and with the evaluator
+ * the screen used before it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpacedExpressionBenchmark {
+
+    @Param({"8", "64", "512"})
+    public int operands;
+
+    private String expression;
+    private final Lexer lexer = new Lexer();
+    private final Parser parser = new Parser();
+    private final Engine engine = new Engine(DivisionByZero.RETURN_ZERO);
+    private Program program;
+    private double[] stack;
+
+    @Setup
+    public void setUp() {
+        expression = Expressions.spaced(operands, 1);
+        program = parser.parse(expression);
+        stack = new double[program.frameSize];
+    }
+
+    @Benchmark
+    public double legacyLex() {
+        return LegacyEvaluators.lexSpaced(expression);
+    }
+
+    @Benchmark
+    public double lex() {
+        return Expressions.lex(lexer, expression);
+    }
+
+    @Benchmark
+    public Program compile() {
+        return parser.parse(expression);
+    }
+
+    @Benchmark
+    public double execute() {
+        return program.execute(stack, DivisionByZero.RETURN_ZERO);
+    }
+
+    @Benchmark
+    public double legacyEvaluate() {
+        return LegacyEvaluators.evaluateSpaced(expression);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return engine.evaluate(expression);
+    }
+}
@@ -0,0 +1,88 @@
+package com.main.calculator.engine;
+
+import java.math.MathContext;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates arrays of expressions in parallel on a {@link ForkJoinPool}.
+ *
+ * <p>The input is split into ranges whose boundaries are multiples of 64,
+ * so every word of the error bitmap is written by exactly one task. Each
+ * worker thread evaluates its ranges with its own {@link Engine}, kept in a
+ * thread local and reused across tasks and batches, so workers share no
+ * mutable state other than the lock-free {@link Metrics} of the engine
+ * that started the batch, and keep their compiled program caches warm.
+ */
+final class BatchEvaluator {
+
+    private static final int LEAF_SIZE = 1024; // Expressions per task; a multiple of 64
+
+    private final ThreadLocal<Engine> engines;
+
+    BatchEvaluator(final DivisionByZero divisionByZero, final MathContext mathContext, final Metrics metrics) {
+        this.engines = new ThreadLocal<Engine>() {
+            @Override
+            protected Engine initialValue() {
+                return new Engine(divisionByZero, mathContext, metrics);
+            }
+        };
+    }
+
+    /**
+     * Evaluates every expression.
+     *
+     * @param expressions The expressions to evaluate.
+     * @param pool        The pool to run on.
+     * @return The results in input order.
+     */
+    BatchResult evaluateAll(CharSequence[] expressions, ForkJoinPool pool) {
+        double[] values = new double[expressions.length];
+        long[] errors = new long[(expressions.length + 63) >>> 6];
+        if (expressions.length > 0) {
+            pool.invoke(new Shard(expressions, values, errors, 0, expressions.length));
+        }
+        return new BatchResult(values, errors);
+    }
+
+    /**
+     * Evaluates the expressions in {@code [from, to)}, splitting the range while it is large.
+     */
+    private final class Shard extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence[] expressions;
+        private final double[] values;
+        private final long[] errors;
+        private final int from;
+        private final int to;
+
+        Shard(CharSequence[] expressions, double[] values, long[] errors, int from, int to) {
+            this.expressions = expressions;
+            this.values = values;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + (to - from) / 2) & ~63; // Keep bitmap words within one shard
+                invokeAll(new Shard(expressions, values, errors, from, middle),
+                        new Shard(expressions, values, errors, middle, to));
+                return;
+            }
+            Engine engine = engines.get();
+            for (int i = from; i < to; i++) {
+                try {
+                    values[i] = engine.evaluate(expressions[i]);
+                } catch (IllegalArgumentException | ArithmeticException e) {
+                    values[i] = Double.NaN;
+                    errors[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.main.calculator.engine;
+
+/**
+ * The results of {@link Engine#evaluateAll}: one double per expression, in
+ * input order, and a bitmap marking the expressions that failed.
+ */
+public final class BatchResult {
+
+    private final double[] values; // NaN where the expression failed
+    private final long[] errors;   // Bit i % 64 of word i / 64 is set if expression i failed
+
+    BatchResult(double[] values, long[] errors) {
+        this.values = values;
+        this.errors = errors;
+    }
+
+    /**
+     * Returns the number of expressions evaluated.
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns the result of one expression.
+     *
+     * @param index Position of the expression in the input.
+     * @return Its value, or NaN if it failed.
+     */
+    public double value(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns true if the expression was malformed or divided by zero.
+     *
+     * @param index Position of the expression in the input.
+     */
+    public boolean isError(int index) {
+        return (errors[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the number of expressions that failed.
+     */
+    public int errorCount() {
+        int count = 0;
+        for (long word : errors) count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Returns the results array itself, not a copy, for callers that scan it in bulk.
+     */
+    public double[] values() {
+        return values;
+    }
+
+    /**
+     * Returns the error bitmap itself, not a copy: bit {@code i % 64} of
+     * word {@code i / 64} is set if expression {@code i} failed.
+     */
+    public long[] errorBits() {
+        return errors;
+    }
+}
@@ -0,0 +1,54 @@
+package com.main.calculator.engine;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time limit for one evaluation. The parser and the interpreters poll it
+ * every {@value #CHECK_INTERVAL} tokens or opcodes, so a huge expression is
+ * abandoned promptly instead of blocking its thread: past the deadline
+ * they throw {@link EvaluationTimeoutException}, and if the evaluating
+ * thread has been interrupted, as by {@code Future.cancel(true)}, they
+ * throw {@link CancellationException}.
+ */
+public final class Deadline {
+
+    /**
+     * No limit, and no response to interrupts; used by the methods that take no deadline.
+     */
+    public static final Deadline NONE = new Deadline(0, false);
+
+    static final int CHECK_INTERVAL = 1024; // Tokens or opcodes between polls; a power of two
+    static final int CHECK_MASK = CHECK_INTERVAL - 1;
+
+    private final long expiresAt; // In System.nanoTime() units
+    private final boolean bounded;
+
+    private Deadline(long expiresAt, boolean bounded) {
+        this.expiresAt = expiresAt;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Returns a deadline the given time from now.
+     *
+     * @param timeout How long the evaluation may take.
+     * @param unit    The unit of the timeout.
+     * @return The deadline.
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout), true);
+    }
+
+    /**
+     * Throws if the evaluation should stop.
+     *
+     * @throws CancellationException      If the current thread has been interrupted.
+     * @throws EvaluationTimeoutException If the deadline has passed.
+     */
+    void check() {
+        if (!bounded) return;
+        if (Thread.currentThread().isInterrupted()) throw new CancellationException("Evaluation cancelled");
+        if (System.nanoTime() - expiresAt >= 0) throw new EvaluationTimeoutException();
+    }
+}
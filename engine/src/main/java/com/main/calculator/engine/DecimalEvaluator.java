@@ -0,0 +1,206 @@
+package com.main.calculator.engine;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * Executes a {@link Program} in exact decimal arithmetic, so that
+ * {@code 0.1+0.2} is {@code 0.3} rather than {@code 0.30000000000000004}.
+ *
+ * <p>Values are kept as fixed-point pairs of an unscaled {@code long} and a
+ * decimal scale on primitive stacks. Addition, subtraction, multiplication,
+ * modulo and divisions with a terminating result stay in that form, which
+ * is exact and allocates nothing. An operation that would overflow a long
+ * or whose quotient does not terminate promotes its result to a
+ * {@link BigDecimal} rounded to the configured {@link MathContext}, which
+ * also bounds the precision of everything computed from it. The final
+ * result is rounded to the same context.
+ *
+ * <p>The stacks are reused across calls, so an evaluator is not thread-safe.
+ */
+final class DecimalEvaluator {
+
+    private static final long[] POWERS_OF_TEN = new long[19]; // 10^0 to 10^18, all fit a long
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final DivisionByZero divisionByZero;
+    private final MathContext mathContext;
+
+    private long[] unscaled = new long[16];         // Fixed-point values: unscaled[i] / 10^scales[i]...
+    private int[] scales = new int[16];
+    private BigDecimal[] promoted = new BigDecimal[16]; // ...unless promoted[i] is set
+
+    DecimalEvaluator(DivisionByZero divisionByZero, MathContext mathContext) {
+        this.divisionByZero = divisionByZero;
+        this.mathContext = mathContext;
+    }
+
+    /**
+     * Runs the program.
+     *
+     * @param program  The program to run.
+     * @param deadline Polled every {@link Deadline#CHECK_INTERVAL} opcodes.
+     * @return The result, rounded to the evaluator's math context.
+     * @throws ArithmeticException If it divides by zero under {@link DivisionByZero#THROW},
+     *                             or a division does not terminate under an unlimited context.
+     */
+    BigDecimal execute(Program program, Deadline deadline) {
+        if (unscaled.length < program.frameSize) {
+            int capacity = Math.max(program.frameSize, unscaled.length * 2);
+            unscaled = new long[capacity];
+            scales = new int[capacity];
+            promoted = new BigDecimal[capacity];
+        }
+        byte[] code = program.code;
+        int sp = -1; // Index of the top of the stack
+        int k = 0;   // Index of the next constant
+        int l = 0;   // Index of the next load
+        int r = program.maxStack; // Slot of the next register stored
+
+        try {
+            for (int pc = 0; pc < code.length; pc++) {
+                if ((pc & Deadline.CHECK_MASK) == Deadline.CHECK_MASK) deadline.check();
+                byte opcode = code[pc];
+                switch (opcode) {
+                    case Program.PUSH:
+                        sp++;
+                        promoted[sp] = program.decimals == null ? null : program.decimals[k];
+                        unscaled[sp] = program.unscaled[k];
+                        scales[sp] = program.scales[k];
+                        k++;
+                        break;
+                    case Operator.NEGATE:
+                        if (promoted[sp] == null && unscaled[sp] != Long.MIN_VALUE) {
+                            unscaled[sp] = -unscaled[sp];
+                        } else {
+                            promoted[sp] = toBigDecimal(sp).negate();
+                        }
+                        break;
+                    case Program.LOAD:
+                        copy(program.maxStack + program.loads[l++], ++sp);
+                        break;
+                    case Program.STORE:
+                        copy(sp, r++);
+                        break;
+                    default:
+                        sp--;
+                        if (promoted[sp] != null || promoted[sp + 1] != null || !applyFixed(opcode, sp)) {
+                            applyPromoted(opcode, sp);
+                        }
+                        promoted[sp + 1] = null;
+                }
+            }
+            return toBigDecimal(0).round(mathContext);
+        } finally {
+            Arrays.fill(promoted, 0, program.frameSize, null); // Don't keep values reachable between calls
+        }
+    }
+
+    /**
+     * Applies a binary operator to the fixed-point values at {@code i} and {@code i + 1},
+     * leaving the result at {@code i}.
+     *
+     * @return False, with both operands untouched, if the result does not fit a long
+     *         or is a non-terminating quotient.
+     */
+    private boolean applyFixed(byte operator, int i) {
+        long a = unscaled[i];
+        long b = unscaled[i + 1];
+        int scaleA = scales[i];
+        int scaleB = scales[i + 1];
+        if ((operator == Operator.DIVIDE || operator == Operator.MODULO) && b == 0) {
+            unscaled[i] = divideByZero();
+            scales[i] = 0;
+            return true;
+        }
+        try {
+            switch (operator) {
+                case Operator.MULTIPLY:
+                    unscaled[i] = Math.multiplyExact(a, b);
+                    scales[i] = scaleA + scaleB;
+                    return true;
+                case Operator.DIVIDE:
+                    // a/b terminates within the fast path if a * 10^shift is a multiple of b
+                    for (int shift = 0; shift < POWERS_OF_TEN.length; shift++) {
+                        long dividend = Math.multiplyExact(a, POWERS_OF_TEN[shift]);
+                        if (dividend % b == 0) {
+                            if (dividend == Long.MIN_VALUE && b == -1) return false;
+                            unscaled[i] = dividend / b;
+                            scales[i] = scaleA - scaleB + shift;
+                            return true;
+                        }
+                    }
+                    return false;
+                default:
+                    int scale = Math.max(scaleA, scaleB);
+                    a = rescale(a, scale - scaleA);
+                    b = rescale(b, scale - scaleB);
+                    switch (operator) {
+                        case Operator.ADD: unscaled[i] = Math.addExact(a, b); break;
+                        case Operator.SUBTRACT: unscaled[i] = Math.subtractExact(a, b); break;
+                        case Operator.MODULO: unscaled[i] = a % b; break;
+                        default: throw new IllegalStateException("Invalid opcode: " + operator);
+                    }
+                    scales[i] = scale;
+                    return true;
+            }
+        } catch (ArithmeticException overflow) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies a binary operator to the values at {@code i} and {@code i + 1} as
+     * BigDecimals, leaving the rounded result at {@code i}.
+     */
+    private void applyPromoted(byte operator, int i) {
+        BigDecimal a = toBigDecimal(i);
+        BigDecimal b = toBigDecimal(i + 1);
+        BigDecimal result;
+        switch (operator) {
+            case Operator.ADD: result = a.add(b, mathContext); break;
+            case Operator.SUBTRACT: result = a.subtract(b, mathContext); break;
+            case Operator.MULTIPLY: result = a.multiply(b, mathContext); break;
+            case Operator.DIVIDE:
+                result = b.signum() == 0 ? BigDecimal.valueOf(divideByZero()) : a.divide(b, mathContext);
+                break;
+            case Operator.MODULO:
+                // Exact: the remainder never has more digits than its operands
+                result = b.signum() == 0 ? BigDecimal.valueOf(divideByZero()) : a.remainder(b);
+                break;
+            default: throw new IllegalStateException("Invalid opcode: " + operator);
+        }
+        promoted[i] = result;
+    }
+
+    private void copy(int from, int to) {
+        unscaled[to] = unscaled[from];
+        scales[to] = scales[from];
+        promoted[to] = promoted[from];
+    }
+
+    private BigDecimal toBigDecimal(int i) {
+        return promoted[i] != null ? promoted[i] : BigDecimal.valueOf(unscaled[i], scales[i]);
+    }
+
+    /**
+     * Multiplies an unscaled value by a power of ten.
+     *
+     * @throws ArithmeticException If the result does not fit a long.
+     */
+    static long rescale(long value, int digits) {
+        if (digits == 0) return value;
+        if (digits >= POWERS_OF_TEN.length) throw new ArithmeticException("Overflow");
+        return Math.multiplyExact(value, POWERS_OF_TEN[digits]);
+    }
+
+    private long divideByZero() {
+        if (divisionByZero == DivisionByZero.RETURN_ZERO) return 0;
+        throw new ArithmeticException("Division by zero");
+    }
+}
@@ -0,0 +1,39 @@
+package com.main.calculator.engine;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Formats results for the calculator display: plain notation without an
+ * exponent and without trailing zeros, so {@code 2.50} shows as {@code 2.5}
+ * and {@code 3.0} as {@code 3}.
+ */
+public final class DisplayFormat {
+
+    private DisplayFormat() {
+    }
+
+    /**
+     * Formats an exact decimal result.
+     *
+     * @param value The value to format.
+     * @return The text to display.
+     */
+    public static String format(BigDecimal value) {
+        if (value.signum() == 0) return "0";
+        return value.stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Formats a double result rounded to the given precision, so that binary
+     * rounding noise such as {@code 0.30000000000000004} shows as {@code 0.3}.
+     *
+     * @param value       The value to format.
+     * @param mathContext The precision to round to.
+     * @return The text to display; NaN and infinities use {@link Double#toString}.
+     */
+    public static String format(double value, MathContext mathContext) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return String.valueOf(value);
+        return format(BigDecimal.valueOf(value).round(mathContext));
+    }
+}
@@ -0,0 +1,13 @@
+package com.main.calculator.engine;
+
+/**
+ * What the engine does when a division or modulo has a zero divisor.
+ */
+public enum DivisionByZero {
+
+    /** Throw an {@link ArithmeticException}, reported to the user as an error. */
+    THROW,
+
+    /** Silently produce 0, as the original {@code MainActivity} calculator did. */
+    RETURN_ZERO
+}
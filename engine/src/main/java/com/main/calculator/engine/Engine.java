@@ -0,0 +1,415 @@
+package com.main.calculator.engine;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Entry point for evaluating calculator expressions.
+ *
+ * <p>Expressions may contain decimal numbers, the binary operators
+ * {@code + - * x / %}, a leading or nested unary minus and parentheses.
+ * Whitespace between tokens is ignored. Both calculator screens delegate
+ * to this class so that there is a single evaluator to test and optimise.
+ *
+ * <p>Expressions are compiled once into a flat postfix program, with
+ * constant subexpressions folded and repeated ones computed only once,
+ * and kept in a small cache keyed by their normalized text, so pressing
+ * {@code =} again on the same input skips lexing and parsing. The parser,
+ * optimizer, cache and operand stack are reused between calls, so each
+ * thread must use its own engine.
+ *
+ * <p>{@link #evaluate} computes in {@code double}. {@link #evaluateDecimal}
+ * runs the same compiled program in exact decimal arithmetic, rounding
+ * only non-terminating quotients and the result to the engine's
+ * {@link MathContext}, and {@link #evaluateRational} runs it in exact
+ * fractions with no rounding at all.
+ *
+ * <p>{@link #evaluateAll} evaluates many expressions in parallel; it gives
+ * each worker thread its own engine, so it is safe to call even though the
+ * engine itself is single-threaded.
+ *
+ * <p>Each evaluate method has an overload taking a {@link Deadline}, so a
+ * background thread can give up on a huge expression or be cancelled.
+ *
+ * <p>Results can also be cached, see {@link #setResultCacheCapacity}, so
+ * evaluating the same normalized expression again in the same arithmetic
+ * skips evaluation too.
+ *
+ * <p>On a desktop JVM, {@link #compileFunction} compiles an expression in
+ * the variable {@code n} to bytecode, for evaluating it many times over.
+ *
+ * <p>Every evaluation is counted and timed in the engine's {@link Metrics},
+ * and can be shown in a system trace through a {@link Tracer}.
+ */
+public final class Engine {
+
+    private static final int CACHE_CAPACITY = 32; // Compiled expressions kept per engine
+    private static final String PARSE_SECTION = "Engine.parse";
+    private static final String EVALUATE_SECTION = "Engine.evaluate";
+    private static final String COMPILE_FUNCTION_SECTION = "Engine.compileFunction";
+
+    private final DivisionByZero divisionByZero;
+    private final MathContext mathContext;
+    private final Metrics metrics;
+    private final Parser parser = new Parser();
+    private final Optimizer optimizer = new Optimizer();
+    private final ExpressionCache<Expression> cache = new ExpressionCache<>(CACHE_CAPACITY);
+    private ResultCache results;                 // Null unless results are cached
+    private double[] stack = new double[16];   // Operand stack reused by every evaluation
+    private DecimalEvaluator decimalEvaluator;   // Created on first decimal evaluation
+    private RationalEvaluator rationalEvaluator; // Created on first rational evaluation
+    private BatchEvaluator batchEvaluator;       // Created on first batch evaluation
+    private ExpressionCache<DoubleUnaryOperator> functions; // Created on first compiled function
+    private Tracer tracer = Tracer.NONE;
+
+    /**
+     * Creates an engine that reports division by zero as an error.
+     */
+    public Engine() {
+        this(DivisionByZero.THROW);
+    }
+
+    /**
+     * Creates an engine with the given division by zero policy that rounds
+     * decimal results to 16 significant digits ({@link MathContext#DECIMAL64}).
+     *
+     * @param divisionByZero What to do when a division or modulo has a zero divisor.
+     */
+    public Engine(DivisionByZero divisionByZero) {
+        this(divisionByZero, MathContext.DECIMAL64);
+    }
+
+    /**
+     * Creates an engine with the given division by zero policy and decimal precision.
+     *
+     * @param divisionByZero What to do when a division or modulo has a zero divisor.
+     * @param mathContext    Precision and rounding for {@link #evaluateDecimal}. An unlimited
+     *                       context makes non-terminating divisions such as {@code 1/3} fail.
+     */
+    public Engine(DivisionByZero divisionByZero, MathContext mathContext) {
+        this(divisionByZero, mathContext, new Metrics());
+    }
+
+    /**
+     * Creates an engine that records into existing metrics, as batch workers do.
+     */
+    Engine(DivisionByZero divisionByZero, MathContext mathContext, Metrics metrics) {
+        this.divisionByZero = divisionByZero;
+        this.mathContext = mathContext;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the evaluation counters and latencies of this engine, including
+     * those of its batch evaluations.
+     */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets where trace sections go: one around each evaluation, and one
+     * nested inside it around parsing when the expression is not cached.
+     *
+     * @param tracer The tracer to use, or {@link Tracer#NONE}.
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Caches the results of up to the given number of expressions, least
+     * recently used first out, so that evaluating one again in the same
+     * arithmetic returns the earlier result. Expressions with the same
+     * normalized text, such as {@code 2+3} and {@code 2 + 3}, share an entry.
+     * Failed evaluations are never cached. Off by default; setting a capacity
+     * drops any results already cached.
+     *
+     * @param capacity The number of expressions, or 0 to stop caching.
+     * @throws IllegalArgumentException If the capacity is negative.
+     */
+    public void setResultCacheCapacity(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Negative capacity " + capacity);
+        results = capacity == 0 ? null : new ResultCache(capacity, metrics);
+    }
+
+    /**
+     * Compiles the given expression, or returns the cached compiled form
+     * of an expression with the same normalized text.
+     *
+     * @param expression The expression to compile.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression is malformed.
+     */
+    public Expression compile(CharSequence expression) {
+        return compile(expression, Deadline.NONE);
+    }
+
+    private Expression compile(CharSequence expression, Deadline deadline) {
+        Expression compiled = cache.get(expression);
+        if (compiled == null) {
+            tracer.beginSection(PARSE_SECTION);
+            try {
+                Program program = optimizer.optimize(parser.parse(expression, deadline), deadline);
+                compiled = new Expression(program, divisionByZero);
+            } finally {
+                tracer.endSection();
+            }
+            cache.putLast(compiled);
+        } else {
+            metrics.recordCacheHit();
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles an expression in the variable {@code n} into a JVM class, or
+     * returns the function already compiled for it. For example
+     * {@code compileFunction("nxn+1").applyAsDouble(3)} is 10. Results are
+     * exactly those of {@link #evaluate} on the expression with the argument
+     * written in place of {@code n}, but each call runs as JIT-compiled code
+     * with no interpreter or allocation, so this suits host-side tools that
+     * evaluate one expression over millions of arguments. Functions are kept
+     * in a cache keyed like compiled expressions, and are thread-safe.
+     *
+     * <p>Compiling costs far more than one evaluation. It needs a JVM that
+     * loads class files, so it is not available on Android. Very long
+     * expressions may exceed the size the JIT compiles and run interpreted.
+     *
+     * @param expression The expression to compile, which may use {@code n}.
+     * @return The expression as a function of {@code n}.
+     * @throws IllegalArgumentException      If the expression is malformed or too long for a JVM method.
+     * @throws UnsupportedOperationException If the runtime cannot load class files, as on Android.
+     */
+    public DoubleUnaryOperator compileFunction(CharSequence expression) {
+        if (functions == null) {
+            functions = new ExpressionCache<>(CACHE_CAPACITY);
+        }
+        DoubleUnaryOperator function = functions.get(expression);
+        if (function == null) {
+            tracer.beginSection(COMPILE_FUNCTION_SECTION);
+            try {
+                Program program = optimizer.optimize(parser.parse(expression, Deadline.NONE, true));
+                function = new FunctionCompiler().compile(program, divisionByZero);
+            } finally {
+                tracer.endSection();
+            }
+            functions.putLast(function);
+        }
+        return function;
+    }
+
+    /**
+     * Evaluates the given arithmetic expression.
+     *
+     * @param expression The expression to evaluate.
+     * @return The result of the evaluation.
+     * @throws IllegalArgumentException If the expression is malformed.
+     * @throws ArithmeticException      If it divides by zero and the policy is {@link DivisionByZero#THROW}.
+     */
+    public double evaluate(CharSequence expression) {
+        return evaluate(expression, Deadline.NONE);
+    }
+
+    /**
+     * Evaluates the given arithmetic expression within a time limit.
+     *
+     * @param expression The expression to evaluate.
+     * @param deadline   When to give up.
+     * @return The result of the evaluation.
+     * @throws IllegalArgumentException   If the expression is malformed.
+     * @throws ArithmeticException        If it divides by zero and the policy is {@link DivisionByZero#THROW}.
+     * @throws EvaluationTimeoutException If the deadline passes first.
+     * @throws CancellationException      If the thread is interrupted first.
+     */
+    public double evaluate(CharSequence expression, Deadline deadline) {
+        long started = System.nanoTime();
+        tracer.beginSection(EVALUATE_SECTION);
+        int tokens = 0;
+        try {
+            ResultCache.Results cached = results == null ? null : results.get(expression);
+            if (cached != null && cached.hasDouble) {
+                metrics.recordResultHit();
+                tokens = cached.tokens;
+                return cached.doubleValue;
+            }
+            if (results != null) metrics.recordResultMiss();
+            Program program = compile(expression, deadline).program;
+            tokens = program.tokens;
+            if (stack.length < program.frameSize) {
+                stack = new double[Math.max(program.frameSize, stack.length * 2)];
+            }
+            double result = program.execute(stack, divisionByZero, deadline);
+            if (results != null) {
+                if (cached == null) cached = results.putLast(tokens);
+                cached.doubleValue = result;
+                cached.hasDouble = true;
+            }
+            return result;
+        } catch (IllegalArgumentException | ArithmeticException | EvaluationTimeoutException e) {
+            metrics.recordError();
+            throw e;
+        } finally {
+            tracer.endSection();
+            metrics.recordEvaluation(System.nanoTime() - started, tokens);
+        }
+    }
+
+    /**
+     * Evaluates the given arithmetic expression in exact decimal arithmetic.
+     *
+     * @param expression The expression to evaluate.
+     * @return The result, rounded to the engine's math context.
+     * @throws IllegalArgumentException If the expression is malformed.
+     * @throws ArithmeticException      If it divides by zero and the policy is {@link DivisionByZero#THROW},
+     *                                  or a division does not terminate under an unlimited context.
+     */
+    public BigDecimal evaluateDecimal(CharSequence expression) {
+        return evaluateDecimal(expression, Deadline.NONE);
+    }
+
+    /**
+     * Evaluates the given arithmetic expression in exact decimal arithmetic within a time limit.
+     *
+     * @param expression The expression to evaluate.
+     * @param deadline   When to give up.
+     * @return The result, rounded to the engine's math context.
+     * @throws IllegalArgumentException   If the expression is malformed.
+     * @throws ArithmeticException        If it divides by zero and the policy is {@link DivisionByZero#THROW},
+     *                                    or a division does not terminate under an unlimited context.
+     * @throws EvaluationTimeoutException If the deadline passes first.
+     * @throws CancellationException      If the thread is interrupted first.
+     */
+    public BigDecimal evaluateDecimal(CharSequence expression, Deadline deadline) {
+        if (decimalEvaluator == null) {
+            decimalEvaluator = new DecimalEvaluator(divisionByZero, mathContext);
+        }
+        long started = System.nanoTime();
+        tracer.beginSection(EVALUATE_SECTION);
+        int tokens = 0;
+        try {
+            ResultCache.Results cached = results == null ? null : results.get(expression);
+            if (cached != null && cached.decimal != null) {
+                metrics.recordResultHit();
+                tokens = cached.tokens;
+                return cached.decimal;
+            }
+            if (results != null) metrics.recordResultMiss();
+            Program program = compile(expression, deadline).program;
+            tokens = program.tokens;
+            BigDecimal result = decimalEvaluator.execute(program, deadline);
+            if (results != null) {
+                if (cached == null) cached = results.putLast(tokens);
+                cached.decimal = result;
+            }
+            return result;
+        } catch (IllegalArgumentException | ArithmeticException | EvaluationTimeoutException e) {
+            metrics.recordError();
+            throw e;
+        } finally {
+            tracer.endSection();
+            metrics.recordEvaluation(System.nanoTime() - started, tokens);
+        }
+    }
+
+    /**
+     * Evaluates the given arithmetic expression in exact rational arithmetic.
+     *
+     * @param expression The expression to evaluate.
+     * @return The exact result as a fraction in lowest terms.
+     * @throws IllegalArgumentException If the expression is malformed.
+     * @throws ArithmeticException      If it divides by zero and the policy is {@link DivisionByZero#THROW}.
+     */
+    public Rational evaluateRational(CharSequence expression) {
+        return evaluateRational(expression, Deadline.NONE);
+    }
+
+    /**
+     * Evaluates the given arithmetic expression in exact rational arithmetic within a time limit.
+     *
+     * @param expression The expression to evaluate.
+     * @param deadline   When to give up.
+     * @return The exact result as a fraction in lowest terms.
+     * @throws IllegalArgumentException   If the expression is malformed.
+     * @throws ArithmeticException        If it divides by zero and the policy is {@link DivisionByZero#THROW}.
+     * @throws EvaluationTimeoutException If the deadline passes first.
+     * @throws CancellationException      If the thread is interrupted first.
+     */
+    public Rational evaluateRational(CharSequence expression, Deadline deadline) {
+        if (rationalEvaluator == null) {
+            rationalEvaluator = new RationalEvaluator(divisionByZero);
+        }
+        long started = System.nanoTime();
+        tracer.beginSection(EVALUATE_SECTION);
+        int tokens = 0;
+        try {
+            ResultCache.Results cached = results == null ? null : results.get(expression);
+            if (cached != null && cached.rational != null) {
+                metrics.recordResultHit();
+                tokens = cached.tokens;
+                return cached.rational;
+            }
+            if (results != null) metrics.recordResultMiss();
+            Program program = compile(expression, deadline).program;
+            tokens = program.tokens;
+            Rational result = rationalEvaluator.execute(program, deadline);
+            if (results != null) {
+                if (cached == null) cached = results.putLast(tokens);
+                cached.rational = result;
+            }
+            return result;
+        } catch (IllegalArgumentException | ArithmeticException | EvaluationTimeoutException e) {
+            metrics.recordError();
+            throw e;
+        } finally {
+            tracer.endSection();
+            metrics.recordEvaluation(System.nanoTime() - started, tokens);
+        }
+    }
+
+    /**
+     * Evaluates a batch of expressions in parallel on the common fork-join pool.
+     *
+     * @param expressions The expressions to evaluate.
+     * @return One result per expression, in input order; failures are flagged, not thrown.
+     */
+    public BatchResult evaluateAll(List<? extends CharSequence> expressions) {
+        CharSequence[] array;
+        if (expressions instanceof RandomAccess) {
+            array = new CharSequence[expressions.size()];
+            for (int i = 0; i < array.length; i++) array[i] = expressions.get(i);
+        } else {
+            array = expressions.toArray(new CharSequence[0]);
+        }
+        return evaluateAll(array);
+    }
+
+    /**
+     * Evaluates a batch of expressions in parallel on the common fork-join pool.
+     *
+     * @param expressions The expressions to evaluate.
+     * @return One result per expression, in input order; failures are flagged, not thrown.
+     */
+    public BatchResult evaluateAll(CharSequence[] expressions) {
+        return evaluateAll(expressions, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Evaluates a batch of expressions in parallel on the given pool.
+     *
+     * @param expressions The expressions to evaluate.
+     * @param pool        The pool to run on.
+     * @return One result per expression, in input order; failures are flagged, not thrown.
+     */
+    public BatchResult evaluateAll(CharSequence[] expressions, ForkJoinPool pool) {
+        if (batchEvaluator == null) {
+            batchEvaluator = new BatchEvaluator(divisionByZero, mathContext, metrics);
+        }
+        return batchEvaluator.evaluateAll(expressions, pool);
+    }
+}
@@ -0,0 +1,13 @@
+package com.main.calculator.engine;
+
+/**
+ * Thrown when an evaluation does not finish before its {@link Deadline}.
+ */
+public class EvaluationTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public EvaluationTimeoutException() {
+        super("Evaluation timed out");
+    }
+}
@@ -0,0 +1,28 @@
+package com.main.calculator.engine;
+
+/**
+ * An expression compiled once by {@link Engine#compile} and evaluated any
+ * number of times without lexing or parsing it again. Instances are
+ * immutable and may be shared between threads.
+ */
+public final class Expression {
+
+    final Program program;                       // Compiled postfix program
+    private final DivisionByZero divisionByZero; // Policy of the engine that compiled it
+
+    Expression(Program program, DivisionByZero divisionByZero) {
+        this.program = program;
+        this.divisionByZero = divisionByZero;
+    }
+
+    /**
+     * Evaluates the compiled expression. This allocates a small scratch
+     * stack per call; {@link Engine#evaluate} reuses the engine's instead.
+     *
+     * @return The result of the evaluation.
+     * @throws ArithmeticException If it divides by zero and the policy is {@link DivisionByZero#THROW}.
+     */
+    public double evaluate() {
+        return program.execute(new double[program.frameSize], divisionByZero);
+    }
+}
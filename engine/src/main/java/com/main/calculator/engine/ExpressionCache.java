@@ -0,0 +1,53 @@
+package com.main.calculator.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache of compiled expressions keyed by their
+ * normalized text: whitespace removed and {@code *} spelled as {@code x},
+ * so that {@code "2 * 3"} and {@code "2x3"} share one entry. Values are
+ * whatever an expression compiles to, such as an {@link Expression}.
+ *
+ * <p>Lookups go through a reusable {@link NormalizedKey}, so a cache hit
+ * allocates nothing. The cache is not thread-safe.
+ */
+final class ExpressionCache<V> {
+
+    private final Map<Object, V> entries;
+    private final NormalizedKey lookupKey = new NormalizedKey();
+
+    /**
+     * Creates a cache holding at most the given number of expressions.
+     *
+     * @param capacity The maximum number of entries.
+     */
+    ExpressionCache(final int capacity) {
+        this.entries = new LinkedHashMap<Object, V>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled form of the given expression, if cached.
+     *
+     * @param expression The expression text as typed.
+     * @return The cached value, or null on a miss.
+     */
+    V get(CharSequence expression) {
+        lookupKey.set(expression);
+        return entries.get(lookupKey);
+    }
+
+    /**
+     * Caches the compiled form of the expression last passed to {@link #get}.
+     *
+     * @param compiled The compiled value.
+     */
+    void putLast(V compiled) {
+        entries.put(lookupKey.toString(), compiled);
+    }
+}
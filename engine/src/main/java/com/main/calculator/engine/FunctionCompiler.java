@@ -0,0 +1,389 @@
+package com.main.calculator.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compiles a {@link Program} in the variable {@link Lexer#VARIABLE_NAME}
+ * into a JVM class implementing {@link DoubleUnaryOperator}, so a function
+ * evaluated millions of times runs as JIT-compiled code rather than through
+ * the interpreter loop of {@link Program#execute}.
+ *
+ * <p>The program's operand stack maps onto the JVM operand stack and its
+ * registers onto local variables, so {@code applyAsDouble} is straight-line
+ * code: {@code ldc2_w}, {@code dload}, {@code dadd}, {@code dsub},
+ * {@code dmul}, {@code dneg} and {@code dstore}. Division and remainder call
+ * two small static methods that check for a zero divisor under the
+ * engine's {@link DivisionByZero} policy; they are the only code that
+ * branches, so results are bit for bit those of {@link Program#execute}.
+ *
+ * <p>Each class is defined by its own class loader and refers only to
+ * {@code java.base}, so it is unloaded once its function is unreachable.
+ * This needs a JVM that loads class files: on Android, which runs dex,
+ * defining the class throws {@link UnsupportedOperationException}. The
+ * compiler is stateless and thread-safe.
+ */
+final class FunctionCompiler {
+
+    private static final String CLASS_NAME = "com/main/calculator/engine/CompiledFunction";
+    private static final int CLASS_VERSION = 55;  // Java 11, as the engine is built for
+    private static final int MAX_LENGTH = 0xFFFF; // Of the code of a method, and of the constant pool
+
+    // Access flags
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    // Constant pool tags
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    // Instructions
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD = 0x18;
+    private static final int DLOAD_0 = 0x26;
+    private static final int DLOAD_1 = 0x27;
+    private static final int DLOAD_2 = 0x28;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int DSTORE = 0x39;
+    private static final int DUP = 0x59;
+    private static final int DUP2 = 0x5c;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DREM = 0x73;
+    private static final int DNEG = 0x77;
+    private static final int DCMPL = 0x97;
+    private static final int IFEQ = 0x99;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int NEW = 0xbb;
+    private static final int ATHROW = 0xbf;
+    private static final int WIDE = 0xc4;
+
+    private static final int FIRST_REGISTER = 3; // Local slots: this, then the argument, a double
+
+    /**
+     * Compiles the program into a function of its variable.
+     *
+     * @param program        The program, which may use {@link Program#VARIABLE}.
+     * @param divisionByZero What to do when a division or modulo has a zero divisor.
+     * @return The function, which is stateless and thread-safe.
+     * @throws IllegalArgumentException      If the program is too large for a JVM method.
+     * @throws UnsupportedOperationException If the runtime cannot load class files.
+     */
+    DoubleUnaryOperator compile(Program program, DivisionByZero divisionByZero) {
+        byte[] bytes = new ClassWriter().write(program, divisionByZero);
+        Class<?> type = new FunctionLoader().define(bytes);
+        try {
+            return (DoubleUnaryOperator) type.getConstructor().newInstance();
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException
+                | InvocationTargetException e) {
+            throw new IllegalStateException("Invalid generated class", e);
+        }
+    }
+
+    /**
+     * Defines one generated class. A loader per class lets each be unloaded on its own.
+     */
+    private static final class FunctionLoader extends ClassLoader {
+
+        FunctionLoader() {
+            super(FunctionCompiler.class.getClassLoader());
+        }
+
+        Class<?> define(byte[] bytes) {
+            return defineClass(null, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Writes the class file of one function.
+     */
+    private static final class ClassWriter {
+
+        private final Bytes pool = new Bytes();
+        private final Map<Object, Integer> entries = new HashMap<>(); // Constant pool index of each entry
+        private int poolCount = 1; // Index 0 is unused
+
+        byte[] write(Program program, DivisionByZero divisionByZero) {
+            int thisClass = classEntry(CLASS_NAME);
+            int superClass = classEntry("java/lang/Object");
+            int doubleUnaryOperator = classEntry("java/util/function/DoubleUnaryOperator");
+            int code = utf8("Code");
+            int stackMapTable = utf8("StackMapTable");
+            int divide = methodref(CLASS_NAME, "divide", "(DD)D");
+            int remainder = methodref(CLASS_NAME, "remainder", "(DD)D");
+
+            Bytes methods = new Bytes();
+            writeConstructor(methods, code);
+            writeApply(methods, code, program, divide, remainder);
+            writeDivide(methods, code, stackMapTable, "divide", DDIV, divisionByZero);
+            writeDivide(methods, code, stackMapTable, "remainder", DREM, divisionByZero);
+            if (poolCount > MAX_LENGTH) throw new IllegalArgumentException("Expression too long to compile");
+
+            Bytes file = new Bytes();
+            file.u4(0xCAFEBABE);
+            file.u2(0);
+            file.u2(CLASS_VERSION);
+            file.u2(poolCount);
+            file.append(pool);
+            file.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            file.u2(thisClass);
+            file.u2(superClass);
+            file.u2(1);
+            file.u2(doubleUnaryOperator);
+            file.u2(0); // Fields
+            file.u2(4); // Methods
+            file.append(methods);
+            file.u2(0); // Attributes
+            return file.toByteArray();
+        }
+
+        private void writeConstructor(Bytes methods, int code) {
+            Bytes body = new Bytes();
+            body.u1(ALOAD_0);
+            body.u1(INVOKESPECIAL);
+            body.u2(methodref("java/lang/Object", "<init>", "()V"));
+            body.u1(RETURN);
+            writeMethod(methods, ACC_PUBLIC, "<init>", "()V", code, 1, 1, body, 0, null);
+        }
+
+        /**
+         * Writes {@code applyAsDouble}, translating the program opcode by opcode.
+         */
+        private void writeApply(Bytes methods, int code, Program program, int divide, int remainder) {
+            Bytes body = new Bytes();
+            int k = 0;                       // Index of the next constant
+            int l = 0;                       // Index of the next load
+            int register = FIRST_REGISTER;   // Slot of the next register stored
+            for (byte opcode : program.code) {
+                switch (opcode) {
+                    case Program.PUSH:
+                        double value = program.constants[k++];
+                        if (Double.doubleToRawLongBits(value) == 0) {
+                            body.u1(DCONST_0);
+                        } else if (value == 1) {
+                            body.u1(DCONST_1);
+                        } else {
+                            body.u1(LDC2_W);
+                            body.u2(doubleEntry(value));
+                        }
+                        break;
+                    case Program.VARIABLE:
+                        body.u1(DLOAD_1);
+                        break;
+                    case Program.LOAD:
+                        local(body, DLOAD, FIRST_REGISTER + 2 * program.loads[l++]);
+                        break;
+                    case Program.STORE:
+                        body.u1(DUP2);
+                        local(body, DSTORE, register);
+                        register += 2;
+                        break;
+                    case Operator.ADD: body.u1(DADD); break;
+                    case Operator.SUBTRACT: body.u1(DSUB); break;
+                    case Operator.MULTIPLY: body.u1(DMUL); break;
+                    case Operator.NEGATE: body.u1(DNEG); break;
+                    case Operator.DIVIDE:
+                        body.u1(INVOKESTATIC);
+                        body.u2(divide);
+                        break;
+                    case Operator.MODULO:
+                        body.u1(INVOKESTATIC);
+                        body.u2(remainder);
+                        break;
+                    default:
+                        throw new IllegalStateException("Invalid opcode: " + opcode);
+                }
+            }
+            body.u1(DRETURN);
+            int maxStack = 2 * (program.maxStack + 1); // Doubles take two slots; STORE duplicates the top
+            int maxLocals = register;
+            if (body.size() > MAX_LENGTH || maxStack > MAX_LENGTH || maxLocals > MAX_LENGTH) {
+                throw new IllegalArgumentException("Expression too long to compile");
+            }
+            writeMethod(methods, ACC_PUBLIC | ACC_FINAL, "applyAsDouble", "(D)D", code, maxStack, maxLocals,
+                    body, 0, null);
+        }
+
+        /**
+         * Writes {@code static double name(double a, double b)}, which applies
+         * {@code ddiv} or {@code drem} unless {@code b} is zero.
+         */
+        private void writeDivide(Bytes methods, int code, int stackMapTable, String name, int instruction,
+                                 DivisionByZero divisionByZero) {
+            Bytes body = new Bytes();
+            body.u1(DLOAD_2);
+            body.u1(DCONST_0);
+            body.u1(DCMPL);   // 0 for 0.0 and -0.0, nonzero for NaN, as b == 0 is
+            body.u1(IFEQ);
+            body.u2(7);       // To the zero divisor code below
+            body.u1(DLOAD_0);
+            body.u1(DLOAD_2);
+            body.u1(instruction);
+            body.u1(DRETURN);
+            int zero = body.size();
+            if (divisionByZero == DivisionByZero.RETURN_ZERO) {
+                body.u1(DCONST_0);
+                body.u1(DRETURN);
+            } else {
+                body.u1(NEW);
+                body.u2(classEntry("java/lang/ArithmeticException"));
+                body.u1(DUP);
+                body.u1(LDC_W);
+                body.u2(stringEntry("Division by zero")); // As Operator.divideByZero throws
+                body.u1(INVOKESPECIAL);
+                body.u2(methodref("java/lang/ArithmeticException", "<init>", "(Ljava/lang/String;)V"));
+                body.u1(ATHROW);
+            }
+            Bytes frames = new Bytes();
+            frames.u2(1);
+            frames.u1(zero); // same_frame: the arguments, an empty stack
+            writeMethod(methods, ACC_PRIVATE | ACC_STATIC, name, "(DD)D", code, 4, 4, body, stackMapTable,
+                    frames);
+        }
+
+        private void writeMethod(Bytes methods, int access, String name, String descriptor, int code,
+                                 int maxStack, int maxLocals, Bytes body, int stackMapTable, Bytes frames) {
+            methods.u2(access);
+            methods.u2(utf8(name));
+            methods.u2(utf8(descriptor));
+            methods.u2(1);
+            methods.u2(code);
+            methods.u4(12 + body.size() + (frames == null ? 0 : 6 + frames.size()));
+            methods.u2(maxStack);
+            methods.u2(maxLocals);
+            methods.u4(body.size());
+            methods.append(body);
+            methods.u2(0); // Exception table
+            if (frames == null) {
+                methods.u2(0);
+            } else {
+                methods.u2(1);
+                methods.u2(stackMapTable);
+                methods.u4(frames.size());
+                methods.append(frames);
+            }
+        }
+
+        private static void local(Bytes body, int instruction, int slot) {
+            if (slot <= 0xFF) {
+                body.u1(instruction);
+                body.u1(slot);
+            } else {
+                body.u1(WIDE);
+                body.u1(instruction);
+                body.u2(slot);
+            }
+        }
+
+        private int utf8(String value) {
+            String key = "utf8 " + value; // Keyed by kind too, as a name may also be a class
+            Integer index = entries.get(key);
+            if (index != null) return index;
+            pool.u1(CONSTANT_UTF8);
+            pool.utf(value);
+            return add(key, 1);
+        }
+
+        private int classEntry(String name) {
+            String key = "class " + name;
+            Integer index = entries.get(key);
+            if (index != null) return index;
+            int utf8 = utf8(name);
+            pool.u1(CONSTANT_CLASS);
+            pool.u2(utf8);
+            return add(key, 1);
+        }
+
+        private int stringEntry(String value) {
+            String key = "string " + value;
+            Integer index = entries.get(key);
+            if (index != null) return index;
+            int utf8 = utf8(value);
+            pool.u1(CONSTANT_STRING);
+            pool.u2(utf8);
+            return add(key, 1);
+        }
+
+        private int methodref(String owner, String name, String descriptor) {
+            String key = "method " + owner + '.' + name + descriptor;
+            Integer index = entries.get(key);
+            if (index != null) return index;
+            int ownerClass = classEntry(owner);
+            int nameUtf8 = utf8(name);
+            int descriptorUtf8 = utf8(descriptor);
+            pool.u1(CONSTANT_NAME_AND_TYPE);
+            pool.u2(nameUtf8);
+            pool.u2(descriptorUtf8);
+            int nameAndType = add(new Object(), 1);
+            pool.u1(CONSTANT_METHODREF);
+            pool.u2(ownerClass);
+            pool.u2(nameAndType);
+            return add(key, 1);
+        }
+
+        private int doubleEntry(double value) {
+            Long key = Double.doubleToRawLongBits(value);
+            Integer index = entries.get(key);
+            if (index != null) return index;
+            pool.u1(CONSTANT_DOUBLE);
+            pool.u4((int) (key >>> 32));
+            pool.u4((int) (long) key);
+            return add(key, 2); // Doubles take two pool entries
+        }
+
+        private int add(Object key, int slots) {
+            int index = poolCount;
+            poolCount += slots;
+            entries.put(key, index);
+            return index;
+        }
+    }
+
+    /**
+     * A growable byte array written big-endian, as class files are.
+     */
+    private static final class Bytes extends ByteArrayOutputStream {
+
+        void u1(int value) {
+            write(value);
+        }
+
+        void u2(int value) {
+            write(value >>> 8);
+            write(value);
+        }
+
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        void utf(String value) {
+            // Only ASCII names and messages are written, for which modified UTF-8 is the bytes themselves
+            u2(value.length());
+            for (int i = 0; i < value.length(); i++) write(value.charAt(i));
+        }
+
+        void append(Bytes other) {
+            write(other.buf, 0, other.count);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.main.calculator.engine;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates an expression while it is being typed, one character at a
+ * time, so that a running result can be previewed after every keypress.
+ *
+ * <p>Each character extends the shunting-yard state left by the previous
+ * one: operators are applied to the operand stack as soon as their
+ * precedence allows and the literal being typed is accumulated digit by
+ * digit, so appending does not re-read the earlier input. {@link #preview()}
+ * folds the operators still pending without consuming them, which costs
+ * O(nesting depth) rather than O(length).
+ *
+ * <p>The state after every character is kept as an immutable snapshot whose
+ * operand and operator stacks are persistent linked lists sharing structure
+ * with the previous snapshot, so {@link #delete()} restores the state before
+ * the last character in O(1) instead of re-evaluating the remaining input.
+ *
+ * <p>The preview treats unclosed parentheses as closed and ignores a
+ * trailing operator, so {@code "2x(3+"} previews as 6. While the input
+ * cannot become a valid expression, for example after an unbalanced
+ * {@code ')'} or a division by zero under {@link DivisionByZero#THROW},
+ * there is no preview; deleting back to a valid prefix brings it back.
+ *
+ * <p>Instances are mutable and not thread-safe.
+ */
+public final class IncrementalEvaluator {
+
+    private final DivisionByZero divisionByZero;
+
+    private char[] input = new char[16]; // Characters typed so far
+    private int length;
+    private State state;                 // Snapshot after the last character
+
+    // Working copy of the current snapshot, mutated while appending a character
+    private Values values;
+    private Operators operators;
+    private boolean expectOperand;       // True at the start and after an operator or '('
+    private boolean failed;              // True once the input cannot become valid
+    private boolean hasOperator;         // True once any operator has been typed
+    private boolean inNumber;            // True while a number literal is being typed
+    private long mantissa;
+    private int scale;
+    private boolean exact;
+    private boolean seenDot;
+    private boolean seenDigit;
+    private int literalStart;            // Index of the literal in the input
+
+    private final LiteralText literalText = new LiteralText();
+
+    /**
+     * Creates an incremental evaluator with the given division by zero policy.
+     *
+     * @param divisionByZero What to do when a division or modulo has a zero divisor.
+     */
+    public IncrementalEvaluator(DivisionByZero divisionByZero) {
+        this.divisionByZero = divisionByZero;
+        reset();
+    }
+
+    /**
+     * Forgets all input, as if nothing had been typed.
+     */
+    public void reset() {
+        length = 0;
+        load(State.EMPTY);
+    }
+
+    /**
+     * Replaces the input with the given text, for edits that are not a
+     * single character appended or deleted at the end.
+     *
+     * @param input The whole expression typed so far.
+     */
+    public void set(CharSequence input) {
+        reset();
+        for (int i = 0; i < input.length(); i++) {
+            append(input.charAt(i));
+        }
+    }
+
+    /**
+     * Returns the number of characters typed so far.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Removes the last character, restoring the state before it was typed.
+     * Does nothing if there is no input.
+     */
+    public void delete() {
+        if (length == 0) return;
+        length--;
+        load(state.previous);
+    }
+
+    /**
+     * Extends the input by one character.
+     *
+     * @param c The character typed.
+     */
+    public void append(char c) {
+        if (length == input.length) {
+            input = Arrays.copyOf(input, length * 2);
+        }
+        input[length++] = c;
+        if (!failed) consume(c);
+        state = new State(this);
+    }
+
+    /**
+     * Returns true if there is a running result worth showing: the input so
+     * far is a valid prefix and contains at least one operator.
+     */
+    public boolean hasPreview() {
+        return !failed && hasOperator && (values != null || (inNumber && seenDigit));
+    }
+
+    /**
+     * Returns the running result of the input so far.
+     *
+     * @return The preview value, or NaN if {@link #hasPreview()} is false
+     *         or the pending operators divide by zero.
+     */
+    public double preview() {
+        if (!hasPreview()) return Double.NaN;
+        Values v = values;
+        Operators o = operators;
+        double result;
+        if (inNumber && seenDigit) {
+            result = literalValue();
+        } else if (!expectOperand) {
+            result = v.value;
+            v = v.next;
+        } else {
+            // Drop what is waiting for the missing operand: '(', unary minus and one binary operator
+            while (o != null && (o.operator == Operator.LEFT_PAREN || o.operator == Operator.NEGATE)) o = o.next;
+            if (o != null) o = o.next;
+            result = v.value;
+            v = v.next;
+        }
+        try {
+            for (; o != null; o = o.next) {
+                if (o.operator == Operator.LEFT_PAREN) continue;
+                if (o.operator == Operator.NEGATE) {
+                    result = -result;
+                } else {
+                    result = Operator.apply(o.operator, v.value, result, divisionByZero);
+                    v = v.next;
+                }
+            }
+        } catch (ArithmeticException e) {
+            return Double.NaN;
+        }
+        return result;
+    }
+
+    /**
+     * Advances the working state by one character of a so far valid input.
+     *
+     * @param c The character typed.
+     */
+    private void consume(char c) {
+        int digit = c - '0';
+        if ((digit >= 0 && digit <= 9) || c == '.') {
+            appendToLiteral(c, digit);
+            return;
+        }
+        if (inNumber) endLiteral();
+        if (failed || Character.isWhitespace(c)) return;
+
+        if (c == '(') {
+            if (!expectOperand) {
+                failed = true;
+                return;
+            }
+            operators = new Operators(Operator.LEFT_PAREN, operators);
+        } else if (c == ')') {
+            if (expectOperand) {
+                failed = true;
+                return;
+            }
+            while (operators != null && operators.operator != Operator.LEFT_PAREN) {
+                if (!applyTop()) return;
+            }
+            if (operators == null) {
+                failed = true;
+                return;
+            }
+            operators = operators.next;
+        } else {
+            byte operator = Operator.fromSymbol(c);
+            if (operator == Operator.NONE || (expectOperand && operator != Operator.SUBTRACT)) {
+                failed = true;
+                return;
+            }
+            hasOperator = true;
+            if (expectOperand) {
+                operators = new Operators(Operator.NEGATE, operators); // Only minus may start an operand
+                return;
+            }
+            int precedence = Operator.precedence(operator);
+            while (operators != null && Operator.precedence(operators.operator) >= precedence) {
+                if (!applyTop()) return;
+            }
+            operators = new Operators(operator, operators);
+            expectOperand = true;
+        }
+    }
+
+    private void appendToLiteral(char c, int digit) {
+        if (!inNumber) {
+            if (!expectOperand) {
+                failed = true;
+                return;
+            }
+            inNumber = true;
+            mantissa = 0;
+            scale = 0;
+            exact = true;
+            seenDot = false;
+            seenDigit = false;
+            literalStart = length - 1;
+        }
+        if (c == '.') {
+            if (seenDot) {
+                failed = true;
+                return;
+            }
+            seenDot = true;
+        } else {
+            seenDigit = true;
+            if (mantissa < Lexer.MANTISSA_LIMIT) {
+                mantissa = mantissa * 10 + digit;
+                if (seenDot) scale++;
+            } else if (!seenDot || digit != 0) {
+                exact = false;
+            }
+        }
+    }
+
+    /**
+     * Pushes the literal that ended just before the last character onto the operand stack.
+     */
+    private void endLiteral() {
+        inNumber = false;
+        if (!seenDigit) {
+            failed = true; // A lone '.'
+            return;
+        }
+        values = new Values(Lexer.toDouble(mantissa, scale, exact, literalText, literalStart, length - 1), values);
+        expectOperand = false;
+    }
+
+    /**
+     * Returns the value of the literal that ends with the last character.
+     */
+    private double literalValue() {
+        return Lexer.toDouble(mantissa, scale, exact, literalText, literalStart, length);
+    }
+
+    /**
+     * Pops the top operator and applies it to the operand stack.
+     *
+     * @return False if the operation failed and the input is now invalid.
+     */
+    private boolean applyTop() {
+        byte operator = operators.operator;
+        operators = operators.next;
+        if (Operator.isUnary(operator)) {
+            values = new Values(-values.value, values.next);
+            return true;
+        }
+        Values b = values;
+        Values a = values.next;
+        try {
+            values = new Values(Operator.apply(operator, a.value, b.value, divisionByZero), a.next);
+            return true;
+        } catch (ArithmeticException e) {
+            failed = true;
+            return false;
+        }
+    }
+
+    /**
+     * Makes the given snapshot current and copies it into the working state.
+     */
+    private void load(State snapshot) {
+        state = snapshot;
+        values = snapshot.values;
+        operators = snapshot.operators;
+        expectOperand = snapshot.expectOperand;
+        failed = snapshot.failed;
+        hasOperator = snapshot.hasOperator;
+        inNumber = snapshot.inNumber;
+        mantissa = snapshot.mantissa;
+        scale = snapshot.scale;
+        exact = snapshot.exact;
+        seenDot = snapshot.seenDot;
+        seenDigit = snapshot.seenDigit;
+        literalStart = snapshot.literalStart;
+    }
+
+    /**
+     * The immutable state after one character of input.
+     */
+    private static final class State {
+
+        static final State EMPTY = new State();
+
+        final State previous; // State before the character, null for EMPTY
+        final Values values;
+        final Operators operators;
+        final boolean expectOperand;
+        final boolean failed;
+        final boolean hasOperator;
+        final boolean inNumber;
+        final long mantissa;
+        final int scale;
+        final boolean exact;
+        final boolean seenDot;
+        final boolean seenDigit;
+        final int literalStart;
+
+        private State() {
+            previous = null;
+            values = null;
+            operators = null;
+            expectOperand = true;
+            failed = false;
+            hasOperator = false;
+            inNumber = false;
+            mantissa = 0;
+            scale = 0;
+            exact = true;
+            seenDot = false;
+            seenDigit = false;
+            literalStart = 0;
+        }
+
+        /**
+         * Snapshots the evaluator's working state on top of its current snapshot.
+         */
+        State(IncrementalEvaluator evaluator) {
+            previous = evaluator.state;
+            values = evaluator.values;
+            operators = evaluator.operators;
+            expectOperand = evaluator.expectOperand;
+            failed = evaluator.failed;
+            hasOperator = evaluator.hasOperator;
+            inNumber = evaluator.inNumber;
+            mantissa = evaluator.mantissa;
+            scale = evaluator.scale;
+            exact = evaluator.exact;
+            seenDot = evaluator.seenDot;
+            seenDigit = evaluator.seenDigit;
+            literalStart = evaluator.literalStart;
+        }
+    }
+
+    /**
+     * A persistent operand stack: a cell holding the top value and the rest of the stack.
+     */
+    private static final class Values {
+
+        final double value;
+        final Values next;
+
+        Values(double value, Values next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A persistent operator stack: a cell holding the top operator code and the rest of the stack.
+     */
+    private static final class Operators {
+
+        final byte operator;
+        final Operators next;
+
+        Operators(byte operator, Operators next) {
+            this.operator = operator;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Exposes the typed input to {@link Lexer#toDouble}'s slow path.
+     */
+    private final class LiteralText implements CharSequence {
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return input[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(input, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(input, 0, length);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.main.calculator.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A lock-free histogram of durations in nanoseconds with logarithmic
+ * buckets: every power of two is split into eight equal buckets, so any
+ * reported percentile is within 12.5% of the true value. Recording is a
+ * single atomic increment and never allocates, so it is cheap enough for
+ * every evaluation and safe to call from several threads.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;                       // Eight buckets per power of two
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (62 - SUB_BITS + 2) * SUB_COUNT; // Enough for any non-negative long
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * Records one duration; negative durations count as zero.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Returns the number of durations recorded.
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * Returns the longest duration recorded, exactly.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper estimate of the given percentile.
+     *
+     * @param fraction The percentile as a fraction, such as 0.99 for p99.
+     * @return The duration in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long percentile(double fraction) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(upperBound(i), max());
+        }
+        return max();
+    }
+
+    /**
+     * Returns the bucket of a duration. Values below {@link #SUB_COUNT} get a
+     * bucket each; above that, the top {@link #SUB_BITS} bits after the
+     * leading one select one of the power of two's buckets.
+     */
+    static int bucket(long nanos) {
+        if (nanos < SUB_COUNT) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * Returns the largest duration that falls in a bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int shift = bucket / SUB_COUNT - 1;
+        long sub = bucket % SUB_COUNT;
+        return ((SUB_COUNT + sub + 1) << shift) - 1;
+    }
+}
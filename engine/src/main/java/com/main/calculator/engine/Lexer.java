@@ -0,0 +1,239 @@
+package com.main.calculator.engine;
+
+import java.math.BigDecimal;
+
+/**
+ * Splits an expression into numbers, operators and parentheses in a single
+ * pass over its characters. Whitespace between tokens is ignored, so both
+ * the space separated input of {@code MainActivity} and the compact input
+ * of {@code MainAppII} are accepted.
+ *
+ * <p>Characters are classified through a lookup table and number literals
+ * are accumulated straight into a {@code long} mantissa and decimal scale,
+ * so lexing does not create substrings or call {@link Double#parseDouble}
+ * except for literals with more digits than a {@code double} can hold.
+ *
+ * <p>The letter {@link #VARIABLE_NAME} is read as the variable of a function
+ * compiled by {@link Engine#compileFunction}; it is not {@code x}, which
+ * already means multiplication.
+ */
+final class Lexer {
+
+    // Token types returned by next()
+    static final int NUMBER = 0;
+    static final int OPERATOR = 1;
+    static final int LEFT_PAREN = 2;
+    static final int RIGHT_PAREN = 3;
+    static final int END = 4;
+    static final int VARIABLE = 5;
+
+    static final char VARIABLE_NAME = 'n';
+
+    // Character classes
+    private static final byte OTHER = 0;
+    private static final byte DIGIT = 1;
+    private static final byte DOT = 2;
+    private static final byte SPACE = 3;
+    private static final byte SYMBOL = 4; // Operator, see Operator.fromSymbol
+    private static final byte OPEN = 5;
+    private static final byte CLOSE = 6;
+    private static final byte LETTER = 7; // The variable
+
+    private static final byte[] CLASSES = new byte[128]; // Indexed by ASCII code, OTHER above
+
+    static {
+        for (char c = '0'; c <= '9'; c++) CLASSES[c] = DIGIT;
+        CLASSES['.'] = DOT;
+        CLASSES[' '] = SPACE;
+        CLASSES['\t'] = SPACE;
+        CLASSES['\n'] = SPACE;
+        CLASSES['\r'] = SPACE;
+        for (char c : new char[]{'+', '-', '*', 'x', '/', '%'}) CLASSES[c] = SYMBOL;
+        CLASSES['('] = OPEN;
+        CLASSES[')'] = CLOSE;
+        CLASSES[VARIABLE_NAME] = LETTER;
+    }
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;     // Largest long a double holds exactly
+    static final long MANTISSA_LIMIT = Long.MAX_VALUE / 10;      // Stop accumulating digits at this
+    private static final double[] POWERS_OF_TEN = {               // Exactly representable powers of ten
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private CharSequence input;       // Expression being scanned
+    private int length;               // Length of the input
+    private int pos;                  // Index of the next unread character
+
+    private double number;            // Value when the current token is a number
+    private long mantissa;            // Its digits without the decimal point, as far as they fit
+    private int scale;                // How many of those digits follow the decimal point
+    private boolean exact;            // False if digits did not fit, see decimal()
+    private byte operator;            // Operator code when the current token is an operator
+    private int start;                // Index where the current token starts
+
+    /**
+     * Starts scanning a new expression, so that one lexer can be reused.
+     *
+     * @param input The expression to scan.
+     */
+    void reset(CharSequence input) {
+        this.input = input;
+        this.length = input.length();
+        this.pos = 0;
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @return The type of the token that is now current.
+     */
+    int next() {
+        CharSequence input = this.input;
+        int pos = this.pos;
+        byte cls = OTHER;
+        char c = 0;
+        while (pos < length) {
+            c = input.charAt(pos);
+            cls = c < 128 ? CLASSES[c] : OTHER;
+            if (cls != SPACE) break;
+            pos++;
+        }
+        start = pos;
+        if (pos == length) {
+            this.pos = pos;
+            return END;
+        }
+
+        switch (cls) {
+            case DIGIT:
+            case DOT:
+                this.pos = scanNumber(input, pos);
+                return NUMBER;
+            case SYMBOL:
+                operator = Operator.fromSymbol(c);
+                this.pos = pos + 1;
+                return OPERATOR;
+            case OPEN:
+                this.pos = pos + 1;
+                return LEFT_PAREN;
+            case CLOSE:
+                this.pos = pos + 1;
+                return RIGHT_PAREN;
+            case LETTER:
+                this.pos = pos + 1;
+                return VARIABLE;
+            default:
+                throw error("Unexpected '" + c + "'", pos);
+        }
+    }
+
+    /**
+     * Scans a number literal such as {@code 12}, {@code 1.5}, {@code .5} or {@code 2.}
+     * and stores its value.
+     *
+     * @param input The expression being scanned.
+     * @param pos   Index of the first character of the literal.
+     * @return Index just past the literal.
+     */
+    private int scanNumber(CharSequence input, int pos) {
+        long mantissa = 0;       // Digits accumulated so far, ignoring the decimal point
+        int scale = 0;           // Digits after the decimal point that went into the mantissa
+        boolean exact = true;    // False once a digit that matters did not fit the mantissa
+        boolean seenDot = false;
+        boolean seenDigit = false;
+
+        for (; pos < length; pos++) {
+            char c = input.charAt(pos);
+            int digit = c - '0';
+            if (digit >= 0 && digit <= 9) {
+                seenDigit = true;
+                if (mantissa < MANTISSA_LIMIT) {
+                    mantissa = mantissa * 10 + digit;
+                    if (seenDot) scale++;
+                } else if (!seenDot || digit != 0) {
+                    exact = false;
+                }
+            } else if (c == '.') {
+                if (seenDot) throw error("Unexpected '.'", pos);
+                seenDot = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) throw error("Unexpected '.'", start);
+
+        this.mantissa = mantissa;
+        this.scale = scale;
+        this.exact = exact;
+        this.number = toDouble(mantissa, scale, exact, input, start, pos);
+        return pos;
+    }
+
+    /**
+     * Converts an accumulated number literal to a double.
+     *
+     * @param mantissa The literal's digits without the decimal point, as far as they fit.
+     * @param scale    Number of those digits that follow the decimal point.
+     * @param exact    False if digits that change the value did not fit the mantissa.
+     * @param text     Text holding the literal, used only when the fast path does not apply.
+     * @param start    Index of the literal in the text.
+     * @param end      Index just past the literal.
+     * @return The correctly rounded value of the literal.
+     */
+    static double toDouble(long mantissa, int scale, boolean exact, CharSequence text, int start, int end) {
+        if (exact && mantissa <= MAX_EXACT_MANTISSA && scale < POWERS_OF_TEN.length) {
+            // Both operands are exact doubles, so one division rounds correctly
+            return mantissa / POWERS_OF_TEN[scale];
+        }
+        return Double.parseDouble(text.subSequence(start, end).toString());
+    }
+
+    double number() {
+        return number;
+    }
+
+    /**
+     * Returns the digits of the current number without its decimal point.
+     * The literal's exact value is {@code mantissa() / 10^scale()} when
+     * {@link #isExact()} is true.
+     */
+    long mantissa() {
+        return mantissa;
+    }
+
+    int scale() {
+        return scale;
+    }
+
+    boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Returns the exact value of the current number, for literals whose
+     * digits do not fit {@link #mantissa()}.
+     */
+    BigDecimal decimal() {
+        return new BigDecimal(input.subSequence(start, pos).toString());
+    }
+
+    byte operator() {
+        return operator;
+    }
+
+    int start() {
+        return start;
+    }
+
+    /**
+     * Builds the exception reported for malformed input.
+     *
+     * @param message  What went wrong.
+     * @param position Index in the expression where it went wrong.
+     * @return The exception to throw.
+     */
+    static IllegalArgumentException error(String message, int position) {
+        return new IllegalArgumentException(message + " at position " + position);
+    }
+}
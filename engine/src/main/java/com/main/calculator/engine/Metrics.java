@@ -0,0 +1,142 @@
+package com.main.calculator.engine;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and a latency histogram for an engine's evaluations, updated
+ * without locks so that batch workers can share them.
+ *
+ * <p>Every call to one of the engine's {@code evaluate} methods counts as
+ * one evaluation, with its latency from the start of compilation to the
+ * result. Failed evaluations are also counted as errors; the tokens of an
+ * expression are counted only once it has parsed. When the engine caches
+ * results, each evaluation is also counted as a hit or a miss.
+ */
+public final class Metrics {
+
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder resultHits = new LongAdder();
+    private final LongAdder resultMisses = new LongAdder();
+    private final LongAdder resultEvictions = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    Metrics() {
+    }
+
+    void recordEvaluation(long nanos, int tokenCount) {
+        evaluations.increment();
+        tokens.add(tokenCount);
+        latency.record(nanos);
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    void recordResultHit() {
+        resultHits.increment();
+    }
+
+    void recordResultMiss() {
+        resultMisses.increment();
+    }
+
+    void recordResultEviction() {
+        resultEvictions.increment();
+    }
+
+    /**
+     * Returns the number of evaluations, including failed ones.
+     */
+    public long evaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * Returns the number of evaluations that threw.
+     */
+    public long errors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of tokens in all expressions that parsed.
+     */
+    public long tokens() {
+        return tokens.sum();
+    }
+
+    /**
+     * Returns the number of compilations answered from the cache.
+     */
+    public long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Returns the number of evaluations answered from the result cache.
+     */
+    public long resultHits() {
+        return resultHits.sum();
+    }
+
+    /**
+     * Returns the number of evaluations the result cache could not answer.
+     */
+    public long resultMisses() {
+        return resultMisses.sum();
+    }
+
+    /**
+     * Returns the number of expressions dropped from the full result cache.
+     */
+    public long resultEvictions() {
+        return resultEvictions.sum();
+    }
+
+    /**
+     * Returns the fraction of cached evaluations that were hits, or 0 if
+     * results are not cached.
+     */
+    public double resultHitRatio() {
+        long hits = resultHits();
+        long lookups = hits + resultMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the latency of each evaluation.
+     */
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    /**
+     * Writes the metrics in a human-readable form, as for {@code dumpsys}.
+     *
+     * @param prefix Indentation for each line.
+     * @param writer Where to write.
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("Engine metrics:");
+        writer.print(prefix);
+        writer.printf(Locale.ROOT, "  evaluations=%d errors=%d tokens=%d cacheHits=%d%n",
+                evaluations(), errors(), tokens(), cacheHits());
+        writer.print(prefix);
+        writer.printf(Locale.ROOT, "  results hits=%d misses=%d evictions=%d hitRatio=%.2f%n",
+                resultHits(), resultMisses(), resultEvictions(), resultHitRatio());
+        writer.print(prefix);
+        writer.printf(Locale.ROOT, "  latency p50=%.1fus p99=%.1fus max=%.1fus%n",
+                latency.percentile(0.5) / 1e3, latency.percentile(0.99) / 1e3, latency.max() / 1e3);
+    }
+}
@@ -0,0 +1,76 @@
+package com.main.calculator.engine;
+
+/**
+ * The normalized text of an expression as a map key: whitespace removed
+ * and {@code *} spelled as {@code x}, so that {@code "2 * 3"} and
+ * {@code "2x3"} are the same key. This is the expression's token sequence
+ * with the spacing and spelling that do not change its meaning taken out.
+ *
+ * <p>Only the whitespace the {@link Lexer} skips is removed, and a run of
+ * it between two number characters becomes a single space, since there it
+ * separates tokens: {@code "1 2"} is malformed and must not share a key
+ * with {@code "12"}, nor {@code "2 .5"} with {@code "2.5"}.
+ *
+ * <p>A key is reused for lookups and hashes and compares like the
+ * normalized String, so a lookup allocates nothing; it is never stored in
+ * a map itself. Not thread-safe.
+ */
+final class NormalizedKey {
+
+    private char[] chars = new char[64];
+    private int length;
+    private int hash;
+
+    void set(CharSequence expression) {
+        int n = expression.length();
+        if (chars.length < n) chars = new char[Math.max(n, chars.length * 2)];
+        int length = 0;
+        int hash = 0;
+        boolean skipped = false; // Whitespace skipped since the last character kept
+        for (int i = 0; i < n; i++) {
+            char c = expression.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                skipped = true;
+                continue;
+            }
+            if (skipped && length > 0 && isNumber(chars[length - 1]) && isNumber(c)) {
+                chars[length++] = ' ';
+                hash = 31 * hash + ' ';
+            }
+            skipped = false;
+            if (c == '*') c = 'x';
+            chars[length++] = c;
+            hash = 31 * hash + c; // Same as String.hashCode
+        }
+        this.length = length;
+        this.hash = hash;
+    }
+
+    private static boolean isNumber(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof String)) return false;
+        String text = (String) other;
+        if (text.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != chars[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the normalized text, to store in a map.
+     */
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
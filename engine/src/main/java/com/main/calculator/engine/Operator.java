@@ -0,0 +1,90 @@
+package com.main.calculator.engine;
+
+/**
+ * Codes for the arithmetic operators understood by the engine.
+ * Operators are plain bytes so that they can live on a primitive stack,
+ * and double as the opcodes a {@link Program} uses to apply them.
+ * Code 0 is reserved for {@link Program#PUSH}.
+ */
+final class Operator {
+
+    static final byte ADD = 1;
+    static final byte SUBTRACT = 2;
+    static final byte MULTIPLY = 3;
+    static final byte DIVIDE = 4;
+    static final byte MODULO = 5;
+    static final byte NEGATE = 6;
+    static final byte LEFT_PAREN = 7; // Marker for an open parenthesis on the operator stack; never applied
+
+    static final byte NONE = -1;      // Returned when a symbol is not an operator
+
+    private static final byte[] PRECEDENCE = {0, 1, 1, 2, 2, 2, 3, 0}; // Indexed by code, higher binds tighter
+
+    private Operator() {
+    }
+
+    /**
+     * Maps a binary operator symbol to its code.
+     * Both {@code *} and {@code x} are accepted for multiplication.
+     *
+     * @param c The symbol to look up.
+     * @return The operator code, or {@link #NONE} if the symbol is not a binary operator.
+     */
+    static byte fromSymbol(char c) {
+        switch (c) {
+            case '+': return ADD;
+            case '-': return SUBTRACT;
+            case '*':
+            case 'x': return MULTIPLY;
+            case '/': return DIVIDE;
+            case '%': return MODULO;
+            default: return NONE;
+        }
+    }
+
+    /**
+     * Returns the precedence of the given operator.
+     *
+     * @param operator The operator code.
+     * @return The precedence, higher binds tighter.
+     */
+    static int precedence(byte operator) {
+        return PRECEDENCE[operator];
+    }
+
+    /**
+     * Returns true if the operator takes a single operand.
+     */
+    static boolean isUnary(byte operator) {
+        return operator == NEGATE;
+    }
+
+    /**
+     * Applies a binary operator to two operands.
+     *
+     * @param operator       The operator code to apply.
+     * @param a              The first operand.
+     * @param b              The second operand.
+     * @param divisionByZero What to do when {@code b} is a zero divisor.
+     * @return The result of the operation.
+     */
+    static double apply(byte operator, double a, double b, DivisionByZero divisionByZero) {
+        switch (operator) {
+            case ADD: return a + b;
+            case SUBTRACT: return a - b;
+            case MULTIPLY: return a * b;
+            case DIVIDE:
+                if (b == 0) return divideByZero(divisionByZero);
+                return a / b;
+            case MODULO:
+                if (b == 0) return divideByZero(divisionByZero);
+                return a % b;
+            default: throw new IllegalArgumentException("Invalid operator: " + operator);
+        }
+    }
+
+    static double divideByZero(DivisionByZero divisionByZero) {
+        if (divisionByZero == DivisionByZero.RETURN_ZERO) return 0;
+        throw new ArithmeticException("Division by zero");
+    }
+}
@@ -0,0 +1,334 @@
+package com.main.calculator.engine;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Rewrites a parsed {@link Program} into one that does less work but gives
+ * the same result in double, decimal and rational arithmetic.
+ *
+ * <p>The postfix code is rebuilt as a DAG by hash-consing: every node is
+ * looked up by its operator and operands before it is created, so equal
+ * subexpressions, such as both {@code (1/3)} in {@code (1/3)+(1/3)x3},
+ * become one node. A node used more than once is computed once, kept in a
+ * register by {@link Program#STORE} and reused by {@link Program#LOAD}.
+ *
+ * <p>Additions, subtractions, multiplications and negations of literals are
+ * folded into a single literal while its exact value still fits the
+ * fixed-point form. The folded double is computed by the same double
+ * operation the program would have run, so rounding is unchanged. Divisions
+ * and modulos are never folded: they may throw, and their quotients need not
+ * terminate.
+ *
+ * <p>Evaluation then costs one operation per distinct subexpression rather
+ * than one per operator in the text. A program with nothing to fold or share
+ * is returned as is. Nodes live in arrays owned by the optimizer and reused
+ * across calls, so an optimizer is not thread-safe.
+ */
+final class Optimizer {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int UNARY = -1; // Operand a literal or negation does not have
+
+    // Nodes, numbered as they are created so that operands come before their users
+    private byte[] ops = new byte[INITIAL_CAPACITY];        // Program.PUSH, Program.VARIABLE or an Operator code
+    private int[] lefts = new int[INITIAL_CAPACITY];        // Operand nodes, or UNARY
+    private int[] rights = new int[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY]; // Literal values, for PUSH nodes
+    private long[] unscaled = new long[INITIAL_CAPACITY];
+    private int[] scales = new int[INITIAL_CAPACITY];
+    private BigDecimal[] decimals = new BigDecimal[INITIAL_CAPACITY];
+    private int[] uses = new int[INITIAL_CAPACITY];         // Users reachable from the root
+    private int[] registers = new int[INITIAL_CAPACITY];    // Register holding the node once computed, or -1
+    private int nodeCount;
+
+    private int[] table = new int[INITIAL_CAPACITY * 2];     // Open addressing: node + 1, or 0 when empty
+    private int mask;                                        // Slots in use this call, less one; a power of two
+    private int[] operands = new int[INITIAL_CAPACITY];      // Node on each operand stack slot
+    private int[] pending = new int[INITIAL_CAPACITY * 2 + 1]; // Nodes left to emit, ~node once operands are done
+
+    // The rewritten program being emitted
+    private byte[] code = new byte[INITIAL_CAPACITY * 2];
+    private int codeLength;
+    private int constantCount;
+    private int[] literals = new int[INITIAL_CAPACITY];      // PUSH node of each literal emitted
+    private int[] loads = new int[INITIAL_CAPACITY];
+    private int loadCount;
+    private int registerCount;
+
+    /**
+     * Optimizes the given program with no time limit.
+     *
+     * @param program The program to optimize.
+     * @return An equivalent program, or the given one if it cannot be improved.
+     */
+    Program optimize(Program program) {
+        return optimize(program, Deadline.NONE);
+    }
+
+    /**
+     * Optimizes the given program.
+     *
+     * @param program  The program to optimize.
+     * @param deadline Polled every {@link Deadline#CHECK_INTERVAL} opcodes.
+     * @return An equivalent program, or the given one if it cannot be improved.
+     */
+    Program optimize(Program program, Deadline deadline) {
+        byte[] code = program.code;
+        reset(code.length);
+        try {
+            return rewrite(program, code, deadline);
+        } finally {
+            Arrays.fill(decimals, 0, nodeCount, null); // Don't keep literals reachable between calls
+        }
+    }
+
+    private Program rewrite(Program program, byte[] code, Deadline deadline) {
+        boolean folded = false;
+        int sp = -1; // Index of the top of the operand stack
+        int k = 0;   // Index of the next literal
+
+        for (int pc = 0; pc < code.length; pc++) {
+            if ((pc & Deadline.CHECK_MASK) == Deadline.CHECK_MASK) deadline.check();
+            byte opcode = code[pc];
+            switch (opcode) {
+                case Program.PUSH:
+                    BigDecimal decimal = program.decimals == null ? null : program.decimals[k];
+                    operands[++sp] = literal(program.constants[k], program.unscaled[k], program.scales[k], decimal);
+                    k++;
+                    break;
+                case Operator.NEGATE:
+                    int operand = operands[sp];
+                    if (isFixed(operand) && unscaled[operand] != Long.MIN_VALUE) {
+                        operands[sp] = literal(-values[operand], -unscaled[operand], scales[operand], null);
+                        folded = true;
+                    } else {
+                        operands[sp] = node(opcode, operand, UNARY);
+                    }
+                    break;
+                case Program.VARIABLE:
+                    operands[++sp] = node(opcode, UNARY, UNARY);
+                    break;
+                case Program.LOAD:
+                case Program.STORE:
+                    return program; // Already optimized
+                default:
+                    int right = operands[sp--];
+                    int left = operands[sp];
+                    int constant = isFixed(left) && isFixed(right) ? fold(opcode, left, right) : -1;
+                    folded |= constant >= 0;
+                    operands[sp] = constant >= 0 ? constant : node(opcode, left, right);
+            }
+        }
+
+        int root = operands[0];
+        if (!countUses(root) && !folded) return program;
+        return emit(root, program.tokens);
+    }
+
+    private void reset(int capacity) {
+        if (ops.length < capacity) {
+            int size = ops.length;
+            while (size < capacity) size *= 2;
+            ops = new byte[size];
+            lefts = new int[size];
+            rights = new int[size];
+            values = new double[size];
+            unscaled = new long[size];
+            scales = new int[size];
+            decimals = new BigDecimal[size];
+            uses = new int[size];
+            registers = new int[size];
+            operands = new int[size];
+            code = new byte[size * 2];
+            literals = new int[size];
+            loads = new int[size];
+            table = new int[size * 2];
+            pending = new int[size * 2 + 1];
+        }
+        int slots = INITIAL_CAPACITY * 2;
+        while (slots < capacity * 2) slots *= 2;
+        mask = slots - 1;
+        Arrays.fill(table, 0, slots, 0);
+        nodeCount = 0;
+    }
+
+    /**
+     * Returns true if the node is a literal whose exact value is held in
+     * {@code unscaled} and {@code scales}.
+     */
+    private boolean isFixed(int node) {
+        return ops[node] == Program.PUSH && decimals[node] == null;
+    }
+
+    /**
+     * Folds a binary operator applied to two fixed-point literals, the way
+     * {@link DecimalEvaluator} would apply it.
+     *
+     * @return The literal node, or -1 if the operator is not folded or the
+     *         result does not fit a long.
+     */
+    private int fold(byte operator, int left, int right) {
+        long a = unscaled[left];
+        long b = unscaled[right];
+        int scaleA = scales[left];
+        int scaleB = scales[right];
+        try {
+            switch (operator) {
+                case Operator.MULTIPLY:
+                    return literal(values[left] * values[right], Math.multiplyExact(a, b), scaleA + scaleB, null);
+                case Operator.ADD:
+                case Operator.SUBTRACT:
+                    int scale = Math.max(scaleA, scaleB);
+                    a = DecimalEvaluator.rescale(a, scale - scaleA);
+                    b = DecimalEvaluator.rescale(b, scale - scaleB);
+                    return operator == Operator.ADD
+                            ? literal(values[left] + values[right], Math.addExact(a, b), scale, null)
+                            : literal(values[left] - values[right], Math.subtractExact(a, b), scale, null);
+                default:
+                    return -1;
+            }
+        } catch (ArithmeticException overflow) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the literal node with the given value, creating it if needed.
+     * Literals too long for the fixed-point form are never shared.
+     */
+    private int literal(double value, long unscaled, int scale, BigDecimal decimal) {
+        if (decimal != null) {
+            int node = add(Program.PUSH, UNARY, UNARY);
+            this.values[node] = value;
+            this.unscaled[node] = unscaled;
+            this.scales[node] = scale;
+            this.decimals[node] = decimal;
+            return node;
+        }
+        long bits = Double.doubleToRawLongBits(value); // Keeps 0.0 and -0.0 apart
+        int slot = slot(mix(mix(mix(Program.PUSH, bits), unscaled), scale));
+        for (int node; (node = table[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+            if (ops[node] == Program.PUSH && decimals[node] == null && this.unscaled[node] == unscaled
+                    && scales[node] == scale && Double.doubleToRawLongBits(values[node]) == bits) {
+                return node;
+            }
+        }
+        int node = add(Program.PUSH, UNARY, UNARY);
+        this.values[node] = value;
+        this.unscaled[node] = unscaled;
+        this.scales[node] = scale;
+        table[slot] = node + 1;
+        return node;
+    }
+
+    /**
+     * Returns the node applying the operator to the given operands, creating it if needed.
+     */
+    private int node(byte operator, int left, int right) {
+        int slot = slot(mix(mix(operator, left), right));
+        for (int node; (node = table[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+            if (ops[node] == operator && lefts[node] == left && rights[node] == right) return node;
+        }
+        int node = add(operator, left, right);
+        table[slot] = node + 1;
+        return node;
+    }
+
+    private int add(byte op, int left, int right) {
+        int node = nodeCount++;
+        ops[node] = op;
+        lefts[node] = left;
+        rights[node] = right;
+        decimals[node] = null;
+        return node;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x9E3779B97F4A7C15L;
+    }
+
+    private int slot(long hash) {
+        return (int) (hash >>> 32) & mask; // At least twice as many slots as nodes
+    }
+
+    /**
+     * Counts the users of every node reachable from the root.
+     *
+     * @return True if some operator node has more than one user.
+     */
+    private boolean countUses(int root) {
+        Arrays.fill(uses, 0, nodeCount, 0);
+        uses[root] = 1;
+        boolean shared = false;
+        for (int node = root; node >= 0; node--) { // Users come after their operands
+            if (uses[node] == 0 || lefts[node] == UNARY) continue; // Leaves have no operands
+            shared |= uses[node] > 1;
+            uses[lefts[node]]++;
+            if (rights[node] != UNARY) uses[rights[node]]++;
+        }
+        return shared;
+    }
+
+    /**
+     * Emits the DAG below the root as a program, computing each shared
+     * operator node once and loading it from its register afterwards.
+     * Literals and the variable are cheap enough to push again.
+     */
+    private Program emit(int root, int tokens) {
+        Arrays.fill(registers, 0, nodeCount, -1);
+        codeLength = 0;
+        constantCount = 0;
+        loadCount = 0;
+        registerCount = 0;
+        int depth = 0;
+        int maxDepth = 0;
+        int count = 0;
+        pending[count++] = root;
+
+        while (count > 0) {
+            int node = pending[--count];
+            if (node < 0) {
+                node = ~node;
+                code[codeLength++] = ops[node];
+                if (!Operator.isUnary(ops[node])) depth--;
+                if (uses[node] > 1) {
+                    code[codeLength++] = Program.STORE;
+                    registers[node] = registerCount++;
+                }
+            } else if (registers[node] >= 0) {
+                code[codeLength++] = Program.LOAD;
+                loads[loadCount++] = registers[node];
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else if (ops[node] == Program.PUSH) {
+                code[codeLength++] = Program.PUSH;
+                literals[constantCount++] = node;
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else if (ops[node] == Program.VARIABLE) {
+                code[codeLength++] = Program.VARIABLE;
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else {
+                pending[count++] = ~node;
+                if (rights[node] != UNARY) pending[count++] = rights[node];
+                pending[count++] = lefts[node]; // Left operand first
+            }
+        }
+
+        double[] constants = new double[constantCount];
+        long[] unscaled = new long[constantCount];
+        int[] scales = new int[constantCount];
+        BigDecimal[] decimals = null;
+        for (int i = 0; i < constantCount; i++) {
+            int node = literals[i];
+            constants[i] = values[node];
+            unscaled[i] = this.unscaled[node];
+            scales[i] = this.scales[node];
+            if (this.decimals[node] != null) {
+                if (decimals == null) decimals = new BigDecimal[constantCount];
+                decimals[i] = this.decimals[node];
+            }
+        }
+        return new Program(Arrays.copyOf(code, codeLength), constants, unscaled, scales, decimals, maxDepth,
+                Arrays.copyOf(loads, loadCount), registerCount, tokens);
+    }
+}
@@ -0,0 +1,184 @@
+package com.main.calculator.engine;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Parses an expression into a postfix {@link Program} with the
+ * shunting-yard algorithm: literals are emitted as they are read and each
+ * operator is emitted once its precedence allows.
+ *
+ * <p>The operator stack and the code being emitted are held in arrays
+ * owned by the parser and reused across calls, so a parser is not
+ * thread-safe.
+ */
+final class Parser {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Lexer lexer = new Lexer();
+
+    private byte[] operators = new byte[INITIAL_CAPACITY];  // Operator stack of Operator codes
+    private int operatorCount;                              // Operators on the stack
+
+    private byte[] code = new byte[INITIAL_CAPACITY];       // Opcodes emitted so far
+    private int codeLength;
+    private double[] constants = new double[INITIAL_CAPACITY]; // Literals emitted so far
+    private long[] unscaled = new long[INITIAL_CAPACITY];     // Their exact decimal values
+    private int[] scales = new int[INITIAL_CAPACITY];
+    private BigDecimal[] decimals;                            // Only for literals too long for a long
+    private int constantCount;
+    private int depth;                                      // Operand stack depth at this point of the program
+    private int maxDepth;
+
+    /**
+     * Parses the given expression with no time limit.
+     *
+     * @param expression The expression to parse.
+     * @return The compiled program.
+     * @throws IllegalArgumentException If the expression is malformed.
+     */
+    Program parse(CharSequence expression) {
+        return parse(expression, Deadline.NONE);
+    }
+
+    /**
+     * Parses the given expression.
+     *
+     * @param expression The expression to parse.
+     * @param deadline   Polled every {@link Deadline#CHECK_INTERVAL} tokens.
+     * @return The compiled program.
+     * @throws IllegalArgumentException If the expression is malformed.
+     */
+    Program parse(CharSequence expression, Deadline deadline) {
+        return parse(expression, deadline, false);
+    }
+
+    /**
+     * Parses the given expression, which may use the variable {@link Lexer#VARIABLE_NAME}
+     * if {@code variable} is set.
+     *
+     * @param expression The expression to parse.
+     * @param deadline   Polled every {@link Deadline#CHECK_INTERVAL} tokens.
+     * @param variable   Whether the variable is allowed.
+     * @return The compiled program.
+     * @throws IllegalArgumentException If the expression is malformed.
+     */
+    Program parse(CharSequence expression, Deadline deadline, boolean variable) {
+        Lexer lexer = this.lexer;
+        lexer.reset(expression);
+        operatorCount = 0;
+        codeLength = 0;
+        constantCount = 0;
+        decimals = null;
+        depth = 0;
+        maxDepth = 0;
+        boolean expectOperand = true; // True at the start and after an operator or '('
+        int tokens = 0;
+
+        while (true) {
+            int token = lexer.next();
+            if (token != Lexer.END && (++tokens & Deadline.CHECK_MASK) == 0) deadline.check();
+            switch (token) {
+                case Lexer.NUMBER:
+                    if (!expectOperand) throw Lexer.error("Missing operator", lexer.start());
+                    emitPush(lexer);
+                    expectOperand = false;
+                    break;
+                case Lexer.VARIABLE:
+                    if (!variable) throw Lexer.error("Unexpected '" + Lexer.VARIABLE_NAME + "'", lexer.start());
+                    if (!expectOperand) throw Lexer.error("Missing operator", lexer.start());
+                    emit(Program.VARIABLE);
+                    maxDepth = Math.max(maxDepth, ++depth);
+                    expectOperand = false;
+                    break;
+                case Lexer.LEFT_PAREN:
+                    if (!expectOperand) throw Lexer.error("Missing operator", lexer.start());
+                    pushOperator(Operator.LEFT_PAREN);
+                    break;
+                case Lexer.RIGHT_PAREN:
+                    if (expectOperand) throw Lexer.error("Missing operand", lexer.start());
+                    while (operatorCount > 0 && operators[operatorCount - 1] != Operator.LEFT_PAREN) {
+                        emitOperator(operators[--operatorCount]);
+                    }
+                    if (operatorCount == 0) throw Lexer.error("Unbalanced ')'", lexer.start());
+                    operatorCount--;
+                    break;
+                case Lexer.OPERATOR:
+                    byte operator = lexer.operator();
+                    if (expectOperand) {
+                        // Only minus may start an operand, as in "-5" or "2x(-3)"
+                        if (operator != Operator.SUBTRACT) {
+                            throw Lexer.error("Missing operand", lexer.start());
+                        }
+                        pushOperator(Operator.NEGATE);
+                        break;
+                    }
+                    int precedence = Operator.precedence(operator);
+                    while (operatorCount > 0 && Operator.precedence(operators[operatorCount - 1]) >= precedence) {
+                        emitOperator(operators[--operatorCount]);
+                    }
+                    pushOperator(operator);
+                    expectOperand = true;
+                    break;
+                case Lexer.END:
+                    if (expectOperand) throw Lexer.error("Missing operand", lexer.start());
+                    while (operatorCount > 0) {
+                        byte pending = operators[--operatorCount];
+                        if (pending == Operator.LEFT_PAREN) {
+                            throw Lexer.error("Unbalanced '('", lexer.start());
+                        }
+                        emitOperator(pending);
+                    }
+                    return new Program(Arrays.copyOf(code, codeLength),
+                            Arrays.copyOf(constants, constantCount),
+                            Arrays.copyOf(unscaled, constantCount),
+                            Arrays.copyOf(scales, constantCount),
+                            decimals == null ? null : Arrays.copyOf(decimals, constantCount),
+                            maxDepth, tokens);
+            }
+        }
+    }
+
+    private void pushOperator(byte operator) {
+        if (operatorCount == operators.length) {
+            operators = Arrays.copyOf(operators, operatorCount * 2);
+        }
+        operators[operatorCount++] = operator;
+    }
+
+    /**
+     * Emits a push of the number the lexer is positioned on.
+     */
+    private void emitPush(Lexer lexer) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+            unscaled = Arrays.copyOf(unscaled, constantCount * 2);
+            scales = Arrays.copyOf(scales, constantCount * 2);
+        }
+        constants[constantCount] = lexer.number();
+        unscaled[constantCount] = lexer.mantissa();
+        scales[constantCount] = lexer.scale();
+        if (!lexer.isExact()) {
+            if (decimals == null || decimals.length < constants.length) {
+                decimals = decimals == null ? new BigDecimal[constants.length] : Arrays.copyOf(decimals, constants.length);
+            }
+            decimals[constantCount] = lexer.decimal();
+        }
+        constantCount++;
+        emit(Program.PUSH);
+        maxDepth = Math.max(maxDepth, ++depth);
+    }
+
+    private void emitOperator(byte operator) {
+        emit(operator);
+        if (!Operator.isUnary(operator)) depth--;
+    }
+
+    private void emit(byte opcode) {
+        if (codeLength == code.length) {
+            code = Arrays.copyOf(code, codeLength * 2);
+        }
+        code[codeLength++] = opcode;
+    }
+}
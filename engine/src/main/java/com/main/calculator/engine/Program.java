@@ -0,0 +1,134 @@
+package com.main.calculator.engine;
+
+import java.math.BigDecimal;
+
+/**
+ * A compiled expression in postfix form: a flat array of opcodes and the
+ * number literals they push, executed by a single switch loop over a
+ * primitive stack.
+ *
+ * <p>Opcodes are {@link #PUSH}, which pushes the next constant in order,
+ * and the {@link Operator} codes, which pop their operands and push the
+ * result. Literals appear in the program in the same order as in the
+ * text, so {@code PUSH} needs no operand. Programs are immutable.
+ *
+ * <p>An {@link Optimizer optimized} program also uses registers, held in
+ * the stack array above the operand stack: the i-th {@link #STORE} copies
+ * the top of the stack into register i, and each {@link #LOAD} pushes the
+ * register named by the next entry of {@link #loads}.
+ *
+ * <p>Besides its double value, each literal keeps its exact decimal value
+ * for {@link DecimalEvaluator}: an unscaled {@code long} and a scale, or a
+ * {@link BigDecimal} for the rare literal whose digits do not fit a long.
+ */
+final class Program {
+
+    static final byte PUSH = 0;
+    static final byte LOAD = 8;     // After the Operator codes
+    static final byte STORE = 9;
+    static final byte VARIABLE = 10; // Only in functions, see FunctionCompiler; the interpreters reject it
+
+    private static final int[] NO_LOADS = {};
+
+    final byte[] code;          // Opcodes in execution order
+    final double[] constants;   // Literals consumed by PUSH, in order
+    final long[] unscaled;      // Exact literal i is unscaled[i] / 10^scales[i]...
+    final int[] scales;
+    final BigDecimal[] decimals; // ...unless decimals[i] is set; null if no literal needs it
+    final int maxStack;         // Deepest the operand stack gets
+    final int[] loads;          // Register read by each LOAD, in order
+    final int frameSize;        // maxStack plus registers: the stack array execute needs
+    final int tokens;           // Tokens in the source text, for Metrics
+
+    Program(byte[] code, double[] constants, long[] unscaled, int[] scales, BigDecimal[] decimals, int maxStack,
+            int tokens) {
+        this(code, constants, unscaled, scales, decimals, maxStack, NO_LOADS, 0, tokens);
+    }
+
+    Program(byte[] code, double[] constants, long[] unscaled, int[] scales, BigDecimal[] decimals, int maxStack,
+            int[] loads, int registers, int tokens) {
+        this.code = code;
+        this.constants = constants;
+        this.unscaled = unscaled;
+        this.scales = scales;
+        this.decimals = decimals;
+        this.maxStack = maxStack;
+        this.loads = loads;
+        this.frameSize = maxStack + registers;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Runs the program with no time limit.
+     *
+     * @param stack          Scratch stack of at least {@link #frameSize} entries.
+     * @param divisionByZero What to do when a division or modulo has a zero divisor.
+     * @return The value left on the stack.
+     * @throws ArithmeticException If it divides by zero under {@link DivisionByZero#THROW}.
+     */
+    double execute(double[] stack, DivisionByZero divisionByZero) {
+        return execute(stack, divisionByZero, Deadline.NONE);
+    }
+
+    /**
+     * Runs the program.
+     *
+     * @param stack          Scratch stack of at least {@link #frameSize} entries.
+     * @param divisionByZero What to do when a division or modulo has a zero divisor.
+     * @param deadline       Polled every {@link Deadline#CHECK_INTERVAL} opcodes.
+     * @return The value left on the stack.
+     * @throws ArithmeticException If it divides by zero under {@link DivisionByZero#THROW}.
+     */
+    double execute(double[] stack, DivisionByZero divisionByZero, Deadline deadline) {
+        byte[] code = this.code;
+        double[] constants = this.constants;
+        int sp = -1; // Index of the top of the stack
+        int k = 0;   // Index of the next constant
+        int l = 0;   // Index of the next load
+        int r = maxStack; // Slot of the next register stored
+
+        for (int pc = 0; pc < code.length; pc++) {
+            if ((pc & Deadline.CHECK_MASK) == Deadline.CHECK_MASK) deadline.check();
+            switch (code[pc]) {
+                case PUSH:
+                    stack[++sp] = constants[k++];
+                    break;
+                case Operator.ADD:
+                    stack[sp - 1] += stack[sp];
+                    sp--;
+                    break;
+                case Operator.SUBTRACT:
+                    stack[sp - 1] -= stack[sp];
+                    sp--;
+                    break;
+                case Operator.MULTIPLY:
+                    stack[sp - 1] *= stack[sp];
+                    sp--;
+                    break;
+                case Operator.DIVIDE: {
+                    double b = stack[sp--];
+                    stack[sp] = b == 0 ? Operator.divideByZero(divisionByZero) : stack[sp] / b;
+                    break;
+                }
+                case Operator.MODULO: {
+                    double b = stack[sp--];
+                    stack[sp] = b == 0 ? Operator.divideByZero(divisionByZero) : stack[sp] % b;
+                    break;
+                }
+                case Operator.NEGATE:
+                    stack[sp] = -stack[sp];
+                    break;
+                case LOAD:
+                    stack[sp + 1] = stack[maxStack + loads[l++]];
+                    sp++;
+                    break;
+                case STORE:
+                    stack[r++] = stack[sp];
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid opcode: " + code[pc]);
+            }
+        }
+        return stack[0];
+    }
+}
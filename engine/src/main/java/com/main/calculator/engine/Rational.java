@@ -0,0 +1,93 @@
+package com.main.calculator.engine;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * An exact fraction in lowest terms with a positive denominator, as
+ * returned by {@link Engine#evaluateRational}. Fractions whose terms fit a
+ * {@code long} are stored without {@link BigInteger}s. Instances are
+ * immutable.
+ */
+public final class Rational {
+
+    private final long numerator;           // Used when bigNumerator is null
+    private final long denominator;
+    private final BigInteger bigNumerator;  // Set, with bigDenominator, when a term does not fit a long
+    private final BigInteger bigDenominator;
+
+    Rational(long numerator, long denominator) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+        this.bigNumerator = null;
+        this.bigDenominator = null;
+    }
+
+    Rational(BigInteger numerator, BigInteger denominator) {
+        this.numerator = 0;
+        this.denominator = 1;
+        this.bigNumerator = numerator;
+        this.bigDenominator = denominator;
+    }
+
+    public BigInteger numerator() {
+        return bigNumerator != null ? bigNumerator : BigInteger.valueOf(numerator);
+    }
+
+    public BigInteger denominator() {
+        return bigDenominator != null ? bigDenominator : BigInteger.valueOf(denominator);
+    }
+
+    /**
+     * Returns true if the denominator is 1.
+     */
+    public boolean isInteger() {
+        return bigDenominator != null ? bigDenominator.equals(BigInteger.ONE) : denominator == 1;
+    }
+
+    /**
+     * Converts the fraction to a decimal.
+     *
+     * @param mathContext Precision and rounding of the result.
+     * @return The fraction as a decimal.
+     * @throws ArithmeticException If the context is unlimited and the decimal does not terminate.
+     */
+    public BigDecimal toBigDecimal(MathContext mathContext) {
+        if (bigNumerator == null) {
+            return BigDecimal.valueOf(numerator).divide(BigDecimal.valueOf(denominator), mathContext);
+        }
+        return new BigDecimal(bigNumerator).divide(new BigDecimal(bigDenominator), mathContext);
+    }
+
+    /**
+     * Converts the fraction to the nearest double.
+     */
+    public double doubleValue() {
+        long limit = 1L << 53; // Both terms convert exactly, so one division rounds correctly
+        if (bigNumerator == null && Math.abs(numerator) <= limit && denominator <= limit) {
+            return (double) numerator / denominator;
+        }
+        return toBigDecimal(MathContext.DECIMAL128).doubleValue();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Rational)) return false;
+        Rational that = (Rational) other;
+        return numerator().equals(that.numerator()) && denominator().equals(that.denominator());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * numerator().hashCode() + denominator().hashCode();
+    }
+
+    /**
+     * Returns the fraction as {@code "n/d"}, or just {@code "n"} for integers.
+     */
+    @Override
+    public String toString() {
+        return isInteger() ? numerator().toString() : numerator() + "/" + denominator();
+    }
+}
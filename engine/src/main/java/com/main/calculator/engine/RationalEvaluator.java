@@ -0,0 +1,322 @@
+package com.main.calculator.engine;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Executes a {@link Program} in exact rational arithmetic, so that
+ * {@code 1/3x3} is exactly 1.
+ *
+ * <p>Values are fractions with {@code long} numerators and positive
+ * denominators on primitive stacks, combined with overflow-checked
+ * arithmetic. Fractions are not reduced after every operation: only when
+ * a denominator grows past {@link #REDUCE_THRESHOLD}, when an operation
+ * overflows, and once for the result. An operation that still overflows
+ * after its operands are reduced is redone with {@link BigInteger}s, and
+ * the value returns to longs as soon as it fits again.
+ *
+ * <p>The stacks are reused across calls, so an evaluator is not thread-safe.
+ */
+final class RationalEvaluator {
+
+    private static final long REDUCE_THRESHOLD = 1L << 32; // Denominators beyond this are reduced eagerly
+    private static final long[] POWERS_OF_TEN = new long[19]; // 10^0 to 10^18, all fit a long
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final DivisionByZero divisionByZero;
+
+    private long[] numerators = new long[16];   // Fractions numerators[i] / denominators[i]...
+    private long[] denominators = new long[16];
+    private BigInteger[] bigNumerators = new BigInteger[16];   // ...unless bigNumerators[i] is set
+    private BigInteger[] bigDenominators = new BigInteger[16];
+
+    RationalEvaluator(DivisionByZero divisionByZero) {
+        this.divisionByZero = divisionByZero;
+    }
+
+    /**
+     * Runs the program.
+     *
+     * @param program  The program to run.
+     * @param deadline Polled every {@link Deadline#CHECK_INTERVAL} opcodes.
+     * @return The exact result in lowest terms.
+     * @throws ArithmeticException If it divides by zero under {@link DivisionByZero#THROW}.
+     */
+    Rational execute(Program program, Deadline deadline) {
+        if (numerators.length < program.frameSize) {
+            int capacity = Math.max(program.frameSize, numerators.length * 2);
+            numerators = new long[capacity];
+            denominators = new long[capacity];
+            bigNumerators = new BigInteger[capacity];
+            bigDenominators = new BigInteger[capacity];
+        }
+        byte[] code = program.code;
+        int sp = -1; // Index of the top of the stack
+        int k = 0;   // Index of the next constant
+        int l = 0;   // Index of the next load
+        int r = program.maxStack; // Slot of the next register stored
+
+        try {
+            for (int pc = 0; pc < code.length; pc++) {
+                if ((pc & Deadline.CHECK_MASK) == Deadline.CHECK_MASK) deadline.check();
+                byte opcode = code[pc];
+                switch (opcode) {
+                    case Program.PUSH:
+                        load(++sp, program, k++);
+                        break;
+                    case Operator.NEGATE:
+                        if (bigNumerators[sp] == null && numerators[sp] != Long.MIN_VALUE) {
+                            numerators[sp] = -numerators[sp];
+                        } else {
+                            promote(sp);
+                            bigNumerators[sp] = bigNumerators[sp].negate();
+                        }
+                        break;
+                    case Program.LOAD:
+                        copy(program.maxStack + program.loads[l++], ++sp);
+                        break;
+                    case Program.STORE:
+                        copy(sp, r++);
+                        break;
+                    default:
+                        sp--;
+                        if (bigNumerators[sp] != null || bigNumerators[sp + 1] != null) {
+                            applyBig(opcode, sp);
+                        } else if (!applySmall(opcode, sp)) {
+                            reduce(sp);
+                            reduce(sp + 1);
+                            if (!applySmall(opcode, sp)) applyBig(opcode, sp);
+                        }
+                        bigNumerators[sp + 1] = null;
+                        bigDenominators[sp + 1] = null;
+                }
+            }
+            if (bigNumerators[0] != null) {
+                return new Rational(bigNumerators[0], bigDenominators[0]);
+            }
+            reduce(0);
+            return new Rational(numerators[0], denominators[0]);
+        } finally {
+            Arrays.fill(bigNumerators, 0, program.frameSize, null); // Don't keep values reachable between calls
+            Arrays.fill(bigDenominators, 0, program.frameSize, null);
+        }
+    }
+
+    private void copy(int from, int to) {
+        numerators[to] = numerators[from];
+        denominators[to] = denominators[from];
+        bigNumerators[to] = bigNumerators[from];
+        bigDenominators[to] = bigDenominators[from];
+    }
+
+    /**
+     * Loads literal {@code k} of the program into stack slot {@code i} as unscaled / 10^scale.
+     */
+    private void load(int i, Program program, int k) {
+        BigDecimal decimal = program.decimals == null ? null : program.decimals[k];
+        int scale = program.scales[k];
+        if (decimal == null && scale < POWERS_OF_TEN.length) {
+            numerators[i] = program.unscaled[k];
+            denominators[i] = POWERS_OF_TEN[scale];
+            bigNumerators[i] = null;
+            bigDenominators[i] = null;
+            return;
+        }
+        if (decimal == null) decimal = BigDecimal.valueOf(program.unscaled[k], scale);
+        BigInteger numerator = decimal.unscaledValue();
+        BigInteger denominator = BigInteger.ONE;
+        if (decimal.scale() > 0) {
+            denominator = BigInteger.TEN.pow(decimal.scale());
+        } else {
+            numerator = numerator.multiply(BigInteger.TEN.pow(-decimal.scale()));
+        }
+        setBig(i, numerator, denominator);
+    }
+
+    /**
+     * Applies a binary operator to the long fractions at {@code i} and {@code i + 1},
+     * leaving the result at {@code i}.
+     *
+     * @return False, with both operands untouched, if the result does not fit longs.
+     */
+    private boolean applySmall(byte operator, int i) {
+        long a = numerators[i];
+        long b = denominators[i];
+        long c = numerators[i + 1];
+        long d = denominators[i + 1];
+        long numerator;
+        long denominator;
+        if ((operator == Operator.DIVIDE || operator == Operator.MODULO) && c == 0) {
+            numerators[i] = divideByZero();
+            denominators[i] = 1;
+            return true;
+        }
+        try {
+            switch (operator) {
+                case Operator.ADD:
+                case Operator.SUBTRACT:
+                    if (b == d) {
+                        numerator = operator == Operator.ADD ? Math.addExact(a, c) : Math.subtractExact(a, c);
+                        denominator = b;
+                    } else {
+                        long ad = Math.multiplyExact(a, d);
+                        long cb = Math.multiplyExact(c, b);
+                        numerator = operator == Operator.ADD ? Math.addExact(ad, cb) : Math.subtractExact(ad, cb);
+                        denominator = Math.multiplyExact(b, d);
+                    }
+                    break;
+                case Operator.MULTIPLY:
+                    numerator = Math.multiplyExact(a, c);
+                    denominator = Math.multiplyExact(b, d);
+                    break;
+                case Operator.DIVIDE:
+                    numerator = Math.multiplyExact(a, d);
+                    denominator = Math.multiplyExact(b, c);
+                    if (denominator < 0) {
+                        numerator = Math.negateExact(numerator);
+                        denominator = Math.negateExact(denominator);
+                    }
+                    break;
+                case Operator.MODULO:
+                    // a/b - trunc((a/b) / (c/d)) * c/d, scaled by bd, is ad rem cb
+                    numerator = Math.multiplyExact(a, d) % Math.multiplyExact(c, b);
+                    denominator = Math.multiplyExact(b, d);
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid opcode: " + operator);
+            }
+        } catch (ArithmeticException overflow) {
+            return false;
+        }
+        numerators[i] = numerator;
+        denominators[i] = denominator;
+        if (denominator > REDUCE_THRESHOLD) reduce(i);
+        return true;
+    }
+
+    /**
+     * Applies a binary operator to the fractions at {@code i} and {@code i + 1}
+     * with BigIntegers, leaving the reduced result at {@code i}.
+     */
+    private void applyBig(byte operator, int i) {
+        promote(i);
+        promote(i + 1);
+        BigInteger a = bigNumerators[i];
+        BigInteger b = bigDenominators[i];
+        BigInteger c = bigNumerators[i + 1];
+        BigInteger d = bigDenominators[i + 1];
+        if ((operator == Operator.DIVIDE || operator == Operator.MODULO) && c.signum() == 0) {
+            numerators[i] = divideByZero();
+            denominators[i] = 1;
+            bigNumerators[i] = null;
+            bigDenominators[i] = null;
+            return;
+        }
+        BigInteger numerator;
+        BigInteger denominator;
+        switch (operator) {
+            case Operator.ADD:
+                numerator = a.multiply(d).add(c.multiply(b));
+                denominator = b.multiply(d);
+                break;
+            case Operator.SUBTRACT:
+                numerator = a.multiply(d).subtract(c.multiply(b));
+                denominator = b.multiply(d);
+                break;
+            case Operator.MULTIPLY:
+                numerator = a.multiply(c);
+                denominator = b.multiply(d);
+                break;
+            case Operator.DIVIDE:
+                numerator = a.multiply(d);
+                denominator = b.multiply(c);
+                if (denominator.signum() < 0) {
+                    numerator = numerator.negate();
+                    denominator = denominator.negate();
+                }
+                break;
+            case Operator.MODULO:
+                numerator = a.multiply(d).remainder(c.multiply(b));
+                denominator = b.multiply(d);
+                break;
+            default:
+                throw new IllegalStateException("Invalid opcode: " + operator);
+        }
+        setBig(i, numerator, denominator);
+    }
+
+    /**
+     * Stores a BigInteger fraction in slot {@code i} in lowest terms, as longs
+     * if both terms fit. Already on the slow path, so it reduces every time
+     * to keep the terms small and big results canonical.
+     */
+    private void setBig(int i, BigInteger numerator, BigInteger denominator) {
+        BigInteger gcd = numerator.gcd(denominator);
+        if (!gcd.equals(BigInteger.ONE)) {
+            numerator = numerator.divide(gcd);
+            denominator = denominator.divide(gcd);
+        }
+        if (numerator.bitLength() < Long.SIZE && denominator.bitLength() < Long.SIZE) {
+            numerators[i] = numerator.longValue();
+            denominators[i] = denominator.longValue();
+            bigNumerators[i] = null;
+            bigDenominators[i] = null;
+        } else {
+            bigNumerators[i] = numerator;
+            bigDenominators[i] = denominator;
+        }
+    }
+
+    /**
+     * Makes sure slot {@code i} holds its fraction as BigIntegers.
+     */
+    private void promote(int i) {
+        if (bigNumerators[i] == null) {
+            bigNumerators[i] = BigInteger.valueOf(numerators[i]);
+            bigDenominators[i] = BigInteger.valueOf(denominators[i]);
+        }
+    }
+
+    /**
+     * Divides the long fraction in slot {@code i} by the GCD of its terms.
+     */
+    private void reduce(int i) {
+        long numerator = numerators[i];
+        long denominator = denominators[i];
+        if (numerator == 0) {
+            denominators[i] = 1;
+            return;
+        }
+        long gcd = gcd(numerator, denominator);
+        if (gcd > 1) {
+            numerators[i] = numerator / gcd;
+            denominators[i] = denominator / gcd;
+        }
+    }
+
+    /**
+     * Euclid's algorithm. The result is at most {@code b}, so its absolute value fits a long.
+     *
+     * @param a Any value.
+     * @param b A positive value.
+     * @return The greatest common divisor, positive.
+     */
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return Math.abs(a);
+    }
+
+    private long divideByZero() {
+        if (divisionByZero == DivisionByZero.RETURN_ZERO) return 0;
+        throw new ArithmeticException("Division by zero");
+    }
+}
@@ -0,0 +1,80 @@
+package com.main.calculator.engine;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache of evaluation results, keyed like
+ * {@link ExpressionCache} so that {@code "2+3"} and {@code "2 + 3"} share
+ * one entry. An entry holds a result for each arithmetic its expression has
+ * been evaluated in.
+ *
+ * <p>A result depends only on the normalized text and on the division by
+ * zero policy and precision of the engine, which never change, so an entry
+ * stays valid until it is evicted. Only successful evaluations are stored:
+ * errors, timeouts and cancellations always evaluate again. Hits, misses
+ * and evictions are counted in the engine's {@link Metrics}. The cache is
+ * not thread-safe.
+ */
+final class ResultCache {
+
+    /**
+     * The results of one expression, each set once it has been computed.
+     */
+    static final class Results {
+
+        final int tokens;                      // Of the expression, for the metrics of a hit
+        boolean hasDouble;
+        double doubleValue;
+        BigDecimal decimal;                    // Null until evaluated in decimal
+        Rational rational;                     // Null until evaluated in rationals
+
+        Results(int tokens) {
+            this.tokens = tokens;
+        }
+    }
+
+    private final Map<Object, Results> entries;
+    private final NormalizedKey lookupKey = new NormalizedKey();
+
+    /**
+     * Creates a cache holding the results of at most the given number of expressions.
+     *
+     * @param capacity The maximum number of entries.
+     * @param metrics  Where to count evictions.
+     */
+    ResultCache(final int capacity, final Metrics metrics) {
+        this.entries = new LinkedHashMap<Object, Results>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Results> eldest) {
+                if (size() <= capacity) return false;
+                metrics.recordResultEviction();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the results of the given expression, if any are cached.
+     *
+     * @param expression The expression text as typed.
+     * @return The entry, or null if there is none.
+     */
+    Results get(CharSequence expression) {
+        lookupKey.set(expression);
+        return entries.get(lookupKey);
+    }
+
+    /**
+     * Adds an empty entry for the expression last passed to {@link #get}.
+     *
+     * @param tokens The number of tokens in the expression.
+     * @return The new entry.
+     */
+    Results putLast(int tokens) {
+        Results entry = new Results(tokens);
+        entries.put(lookupKey.toString(), entry);
+        return entry;
+    }
+}
@@ -0,0 +1,38 @@
+package com.main.calculator.engine;
+
+/**
+ * Receives named sections around the engine's stages, so that an app can
+ * forward them to the platform tracer and see parsing and evaluation in a
+ * system trace. Sections nest, are opened and closed on the evaluating
+ * thread, and are always closed, also when evaluation throws.
+ *
+ * <p>The engine has no Android dependency, so the app supplies the
+ * implementation; the default {@link #NONE} does nothing.
+ */
+public interface Tracer {
+
+    /**
+     * A tracer that ignores every section.
+     */
+    Tracer NONE = new Tracer() {
+        @Override
+        public void beginSection(String name) {
+        }
+
+        @Override
+        public void endSection() {
+        }
+    };
+
+    /**
+     * Opens a section.
+     *
+     * @param name A constant label for the section.
+     */
+    void beginSection(String name);
+
+    /**
+     * Closes the most recently opened section.
+     */
+    void endSection();
+}
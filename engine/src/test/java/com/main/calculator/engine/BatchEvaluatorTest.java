@@ -0,0 +1,76 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Engine#evaluateAll}, run on the development machine (host).
+ */
+public class BatchEvaluatorTest {
+
+    private final Engine engine = new Engine();
+
+    @Test
+    public void smallBatch_isCorrect() {
+        BatchResult result = engine.evaluateAll(Arrays.asList("1+2", "2x3", "1/0", "(1", "-4%3"));
+        assertEquals(5, result.size());
+        assertEquals(3.0, result.value(0), 0.0);
+        assertEquals(6.0, result.value(1), 0.0);
+        assertTrue(Double.isNaN(result.value(2)));
+        assertTrue(Double.isNaN(result.value(3)));
+        assertEquals(-1.0, result.value(4), 0.0);
+        assertFalse(result.isError(0));
+        assertTrue(result.isError(2));
+        assertTrue(result.isError(3));
+        assertEquals(2, result.errorCount());
+        assertEquals(1, result.errorBits().length);
+    }
+
+    @Test
+    public void largeBatch_matchesSequentialEvaluation() {
+        List<String> expressions = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            expressions.add(i % 97 == 0 ? i + "/0" : i + "x3-" + (i % 13) + "/(" + (i % 5) + "+1)");
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BatchResult result = engine.evaluateAll(expressions.toArray(new CharSequence[0]), pool);
+            Engine sequential = new Engine();
+            int errors = 0;
+            for (int i = 0; i < expressions.size(); i++) {
+                if (i % 97 == 0) {
+                    assertTrue(result.isError(i));
+                    errors++;
+                } else {
+                    assertFalse(result.isError(i));
+                    assertEquals(sequential.evaluate(expressions.get(i)), result.value(i), 0.0);
+                }
+            }
+            assertEquals(errors, result.errorCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void divisionByZeroPolicy_isShared() {
+        BatchResult result = new Engine(DivisionByZero.RETURN_ZERO).evaluateAll(new LinkedList<>(Arrays.asList("1/0", "5%0")));
+        assertEquals(0, result.errorCount());
+        assertEquals(0.0, result.value(0), 0.0);
+        assertEquals(0.0, result.value(1), 0.0);
+    }
+
+    @Test
+    public void emptyBatch_isEmpty() {
+        BatchResult result = engine.evaluateAll(new CharSequence[0]);
+        assertEquals(0, result.size());
+        assertEquals(0, result.errorCount());
+    }
+}
@@ -0,0 +1,66 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Deadline}, run on the development machine (host).
+ */
+public class DeadlineTest {
+
+    private final Engine engine = new Engine();
+
+    @Test
+    public void expiredDeadline_stopsEveryMode() {
+        String expression = quotients(5000); // A sum of literals would fold to a single push
+        Deadline expired = Deadline.after(0, TimeUnit.NANOSECONDS);
+        assertThrows(EvaluationTimeoutException.class, () -> engine.evaluate(expression, expired));
+        engine.compile(expression); // The interpreters must stop on their own, not just the parser
+        assertThrows(EvaluationTimeoutException.class, () -> engine.evaluate(expression, expired));
+        assertThrows(EvaluationTimeoutException.class, () -> engine.evaluateDecimal(expression, expired));
+        assertThrows(EvaluationTimeoutException.class, () -> engine.evaluateRational(expression, expired));
+        assertEquals(4, engine.metrics().errors());
+    }
+
+    @Test
+    public void generousDeadline_doesNotInterfere() {
+        Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+        assertEquals(5000, engine.evaluate(sum(5000), deadline), 0);
+        assertEquals("5000", engine.evaluateRational(sum(5000), deadline).toString());
+        assertEquals(5000, engine.evaluate(sum(5000), Deadline.NONE), 0);
+    }
+
+    @Test
+    public void interruptedThread_cancels() {
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(CancellationException.class,
+                    () -> engine.evaluate(sum(5000), Deadline.after(1, TimeUnit.MINUTES)));
+            assertEquals(5000, engine.evaluate(sum(5000)), 0); // No deadline ignores interrupts
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(0, engine.metrics().errors());
+    }
+
+    @Test
+    public void shortExpressions_finishBeforeTheFirstCheck() {
+        assertEquals(3, engine.evaluate("1+2", Deadline.after(0, TimeUnit.NANOSECONDS)), 0);
+    }
+
+    private static String sum(int terms) {
+        StringBuilder expression = new StringBuilder("1");
+        for (int i = 1; i < terms; i++) expression.append("+1");
+        return expression.toString();
+    }
+
+    private static String quotients(int terms) {
+        StringBuilder expression = new StringBuilder("1/1");
+        for (int i = 2; i <= terms; i++) expression.append('+').append(i).append('/').append(i);
+        return expression.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Engine#evaluateDecimal}, run on the development machine (host).
+ */
+public class DecimalEvaluatorTest {
+
+    private final Engine engine = new Engine();
+
+    @Test
+    public void decimalSums_areExact() {
+        assertDecimal("0.3", "0.1+0.2");
+        assertDecimal("0.1", "1.1-1");
+        assertDecimal("3.5", "7/2");
+        assertDecimal("0.125", "1/8");
+        assertDecimal("10000", "100/0.01");
+        assertDecimal("0.5", "10.5%2");
+        assertDecimal("-0.5", "-10.5%2");
+        assertDecimal("-6.25", "2.5x-2.5");
+    }
+
+    @Test
+    public void nonTerminatingQuotients_areRounded() {
+        assertDecimal("0.3333333333333333", "1/3");
+        assertDecimal("0.9999999999999999", "1/3x3");
+        assertDecimal("0.33333", new Engine(DivisionByZero.THROW, new MathContext(5)).evaluateDecimal("1/3"));
+        Engine unlimited = new Engine(DivisionByZero.THROW, MathContext.UNLIMITED);
+        assertDecimal("0.0625", unlimited.evaluateDecimal("1/16"));
+        assertThrows(ArithmeticException.class, () -> unlimited.evaluateDecimal("1/3"));
+    }
+
+    @Test
+    public void overflow_promotesToBigDecimal() {
+        assertDecimal("9999999999800000000000", "99999999999x99999999999");
+        assertDecimal("18446744073709550000", "9223372036854775807+9223372036854775807");
+        assertDecimal("1", "100000000000000000000000001/100000000000000000000000000");
+        assertDecimal("18446744073709551614",
+                new Engine(DivisionByZero.THROW, MathContext.UNLIMITED).evaluateDecimal("9223372036854775807x2"));
+        assertDecimal("-9223372036854776000", "-9223372036854775807-1");
+    }
+
+    @Test
+    public void divisionByZero_followsPolicy() {
+        assertThrows(ArithmeticException.class, () -> engine.evaluateDecimal("1/0"));
+        assertThrows(ArithmeticException.class, () -> engine.evaluateDecimal("1%(2-2)"));
+        assertDecimal("5", new Engine(DivisionByZero.RETURN_ZERO).evaluateDecimal("5+1/0"));
+    }
+
+    @Test
+    public void results_areRoundedToContext() {
+        assertEquals(new BigDecimal("1.524157875019052E+16"), engine.evaluateDecimal("123456789x123456789"));
+    }
+
+    @Test
+    public void smallOperands_allocateOnlyTheResult() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        String expression = "(12.5 + 3) x 4 - 7 / 2 % 3 - -1.25";
+        threads.getThreadAllocatedBytes(thread);
+
+        // A real per-call allocation shows up in every round; JIT warm-up only in some
+        long allocated = 0;
+        for (int round = 0; round < 20; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 1000; i++) engine.evaluateDecimal(expression);
+            allocated = threads.getThreadAllocatedBytes(thread) - before;
+            if (allocated <= 1000 * 64) break;
+        }
+        assertTrue(allocated / 1000 + " bytes per evaluation", allocated <= 1000 * 64); // One BigDecimal
+    }
+
+    private void assertDecimal(String expected, String expression) {
+        assertDecimal(expected, engine.evaluateDecimal(expression));
+    }
+
+    private static void assertDecimal(String expected, BigDecimal actual) {
+        assertEquals(expected, DisplayFormat.format(actual));
+    }
+}
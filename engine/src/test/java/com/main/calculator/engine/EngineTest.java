@@ -0,0 +1,230 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Engine}, run on the development machine (host).
+ */
+public class EngineTest {
+
+    private final Engine engine = new Engine();
+
+    @Test
+    public void precedence_isCorrect() {
+        assertEquals(14, engine.evaluate("2+3x4"), 0);
+        assertEquals(14, engine.evaluate("2 + 3 * 4"), 0);
+        assertEquals(1, engine.evaluate("7 % 3"), 0);
+        assertEquals(2, engine.evaluate("8/2/2"), 0);
+        assertEquals(-1, engine.evaluate("1-1-1"), 0);
+    }
+
+    @Test
+    public void parentheses_areHonoured() {
+        assertEquals(20, engine.evaluate("(2+3)x4"), 0);
+        assertEquals(45, engine.evaluate("((1+2)x(4+1))x3"), 0);
+    }
+
+    @Test
+    public void unaryMinus_isSupported() {
+        assertEquals(-2, engine.evaluate("-5+3"), 0);
+        assertEquals(-5, engine.evaluate("-(2+3)"), 0);
+        assertEquals(-6, engine.evaluate("2x-3"), 0);
+        assertEquals(2, engine.evaluate("--2"), 0);
+    }
+
+    @Test
+    public void decimals_areParsed() {
+        assertEquals(1.75, engine.evaluate("1.5+.25"), 0);
+        assertEquals(2, engine.evaluate("2."), 0);
+    }
+
+    @Test
+    public void divisionByZero_followsPolicy() {
+        assertThrows(ArithmeticException.class, () -> engine.evaluate("1/0"));
+        assertEquals(0, new Engine(DivisionByZero.RETURN_ZERO).evaluate("1 / 0"), 0);
+    }
+
+    @Test
+    public void malformedExpressions_areRejected() {
+        String[] invalid = {"", "2+", "x2", "(2+3", "2+3)", "1.2.3", "2(3)", "2 3", "2#3"};
+        for (String expression : invalid) {
+            assertThrows(expression, IllegalArgumentException.class, () -> engine.evaluate(expression));
+        }
+    }
+
+    @Test
+    public void deepNesting_growsStacks() {
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < 1000; i++) expression.append("(1+");
+        expression.append('1');
+        for (int i = 0; i < 1000; i++) expression.append(')');
+        assertEquals(1001, engine.evaluate(expression), 0);
+        assertEquals(3, engine.evaluate("1+2"), 0); // Reused after growing
+    }
+
+    @Test
+    public void failedEvaluation_doesNotAffectNextOne() {
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("(1+(2x"));
+        assertEquals(6, engine.evaluate("2x3"), 0);
+    }
+
+    @Test
+    public void steadyState_allocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        String expression = "(12.5 + 3) x 4 - 7 / 2 % 3 - -1";
+        threads.getThreadAllocatedBytes(thread);
+
+        // A real per-call allocation shows up in every round; JIT warm-up only in some
+        long allocated = 0;
+        for (int round = 0; round < 20; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 1000; i++) engine.evaluate(expression);
+            allocated = threads.getThreadAllocatedBytes(thread) - before;
+            if (allocated == 0) break;
+        }
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    public void compiledExpressions_areCached() {
+        Expression compiled = engine.compile("2 * (3 + 4)");
+        assertSame(compiled, engine.compile("2x(3+4)"));
+        assertNotSame(compiled, engine.compile("2x(3+5)"));
+        assertEquals(14, compiled.evaluate(), 0);
+    }
+
+    @Test
+    public void compiledExpressions_keepSeparatedNumbersApart() {
+        assertEquals(12, engine.evaluate("12"), 0);
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("1 2"));
+        assertEquals(2.5, engine.evaluate("2.5"), 0);
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("2 .5"));
+        assertEquals(3, engine.evaluate("1+2"), 0);
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("1+\u000B2")); // Not skipped by the lexer
+        assertSame(engine.compile("1 + 2"), engine.compile("1\t+\n2"));
+    }
+
+    @Test
+    public void metrics_countEveryEvaluation() {
+        engine.evaluate("1 + 2");
+        engine.evaluate("1+2");
+        engine.evaluateRational("(1+2)x3");
+        assertThrows(ArithmeticException.class, () -> engine.evaluateDecimal("1/0"));
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("1+"));
+
+        Metrics metrics = engine.metrics();
+        assertEquals(5, metrics.evaluations());
+        assertEquals(2, metrics.errors());
+        assertEquals(3 + 3 + 7 + 3, metrics.tokens());
+        assertEquals(1, metrics.cacheHits());
+        assertEquals(5, metrics.latency().count());
+        assertTrue(metrics.latency().max() > 0);
+    }
+
+    @Test
+    public void resultCache_matchesNormalizedText() {
+        engine.setResultCacheCapacity(2);
+        assertEquals(5, engine.evaluate("2+3"), 0);
+        assertEquals(5, engine.evaluate("2 + 3"), 0);
+        assertEquals(5, engine.evaluate("2 * 2.5"), 0);
+        assertEquals(5, engine.evaluate("2x2.5"), 0);
+        assertEquals("5", engine.evaluateRational("2+3").toString()); // Another arithmetic, another result
+
+        Metrics metrics = engine.metrics();
+        assertEquals(2, metrics.resultHits());
+        assertEquals(3, metrics.resultMisses());
+        assertEquals(0.4, metrics.resultHitRatio(), 1e-9);
+        assertEquals(5, metrics.evaluations());
+        assertEquals(3 + 3 + 3 + 3 + 3, metrics.tokens());
+    }
+
+    @Test
+    public void resultCache_evictsLeastRecentlyUsed() {
+        engine.setResultCacheCapacity(2);
+        engine.evaluate("1+1");
+        engine.evaluate("2+2");
+        engine.evaluate("1+1");  // Now 2+2 is least recently used
+        engine.evaluate("3+3");  // Evicts it
+        engine.evaluate("1+1");
+        engine.evaluate("2+2");
+
+        Metrics metrics = engine.metrics();
+        assertEquals(2, metrics.resultHits());
+        assertEquals(4, metrics.resultMisses());
+        assertEquals(2, metrics.resultEvictions());
+    }
+
+    @Test
+    public void resultCache_neverStoresFailures() {
+        engine.setResultCacheCapacity(8);
+        assertThrows(ArithmeticException.class, () -> engine.evaluate("1/0"));
+        assertThrows(ArithmeticException.class, () -> engine.evaluate("1/0"));
+        Deadline expired = Deadline.after(0, TimeUnit.NANOSECONDS);
+        StringBuilder huge = new StringBuilder("1");
+        for (int i = 0; i < 10_000; i++) huge.append("+1");
+        assertThrows(EvaluationTimeoutException.class, () -> engine.evaluate(huge, expired));
+        assertEquals(10_001, engine.evaluate(huge), 0);
+        assertEquals(0, engine.metrics().resultHits());
+        assertEquals(4, engine.metrics().resultMisses());
+    }
+
+    @Test
+    public void resultCache_keepsSeparatedNumbersApart() {
+        engine.setResultCacheCapacity(8);
+        assertEquals(12, engine.evaluate("12"), 0);
+        assertEquals("12", engine.evaluateRational("12").toString());
+        assertEquals(0, new BigDecimal("12").compareTo(engine.evaluateDecimal("12")));
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("1 2"));
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluateRational("1 2"));
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluateDecimal("1 2"));
+        assertEquals(0, engine.metrics().resultHits());
+        assertEquals(3, engine.metrics().errors());
+    }
+
+    @Test
+    public void resultCache_isOffByDefault() {
+        engine.evaluate("1+1");
+        engine.evaluate("1+1");
+        assertEquals(0, engine.metrics().resultHits());
+        assertEquals(0, engine.metrics().resultMisses());
+        engine.setResultCacheCapacity(1);
+        engine.evaluate("1+1");
+        engine.setResultCacheCapacity(0);
+        engine.evaluate("1+1");
+        assertEquals(1, engine.metrics().resultMisses());
+        assertThrows(IllegalArgumentException.class, () -> engine.setResultCacheCapacity(-1));
+    }
+
+    @Test
+    public void traceSections_areBalanced() {
+        List<String> events = new ArrayList<>();
+        engine.setTracer(new Tracer() {
+            @Override
+            public void beginSection(String name) {
+                events.add("begin " + name);
+            }
+
+            @Override
+            public void endSection() {
+                events.add("end");
+            }
+        });
+        engine.evaluate("1+2");
+        engine.evaluate("1+2");
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluateRational("1+"));
+        assertEquals(List.of(
+                "begin Engine.evaluate", "begin Engine.parse", "end", "end",
+                "begin Engine.evaluate", "end",
+                "begin Engine.evaluate", "begin Engine.parse", "end", "end"), events);
+    }
+}
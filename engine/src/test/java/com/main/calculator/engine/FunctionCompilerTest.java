@@ -0,0 +1,89 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Engine#compileFunction}, run on the development machine (host).
+ */
+public class FunctionCompilerTest {
+
+    private final Engine engine = new Engine();
+
+    @Test
+    public void polynomial_isEvaluated() {
+        DoubleUnaryOperator function = engine.compileFunction("nxn - 2xn + 1");
+        assertEquals(1, function.applyAsDouble(0), 0);
+        assertEquals(0, function.applyAsDouble(1), 0);
+        assertEquals(9, function.applyAsDouble(4), 0);
+        assertEquals(2.25, function.applyAsDouble(-0.5), 0);
+    }
+
+    @Test
+    public void results_matchInterpreter() {
+        String[] expressions = {
+                "n", "-n", "n+0.1+0.2", "1/n", "n%3", "(n/3+1)x(n/3+1)-(n/3+1)", "-(n-n)", "1.07x12+n/12",
+                "((n))%(0.5)", "n/7+n/7+n/7+n/7+n/7+n/7+n/7", "123456789012345678901234567890+n"
+        };
+        double[] arguments = {0, 1, -1, 0.1, -2.5, 3, 1234.5678, 0.001};
+        Engine engine = new Engine(DivisionByZero.RETURN_ZERO); // Both sides agree at 0 too
+        for (String expression : expressions) {
+            DoubleUnaryOperator function = engine.compileFunction(expression);
+            for (double argument : arguments) {
+                String substituted = expression.replace("n", "(" + argument + ")");
+                assertEquals(substituted,
+                        Double.doubleToLongBits(engine.evaluate(substituted)),
+                        Double.doubleToLongBits(function.applyAsDouble(argument)));
+            }
+        }
+    }
+
+    @Test
+    public void divisionByZero_followsPolicy() {
+        DoubleUnaryOperator function = engine.compileFunction("1/n+1%n");
+        ArithmeticException error = assertThrows(ArithmeticException.class, () -> function.applyAsDouble(0));
+        assertEquals("Division by zero", error.getMessage());
+        assertThrows(ArithmeticException.class, () -> function.applyAsDouble(-0.0));
+        assertTrue(Double.isNaN(function.applyAsDouble(Double.NaN)));
+
+        DoubleUnaryOperator lenient = new Engine(DivisionByZero.RETURN_ZERO).compileFunction("1/n+1%n");
+        assertEquals(0, lenient.applyAsDouble(0), 0);
+        assertEquals(1.5, lenient.applyAsDouble(2), 0);
+    }
+
+    @Test
+    public void manyRegisters_useWideLocals() {
+        StringBuilder expression = new StringBuilder("0");
+        for (int i = 1; i <= 200; i++) {
+            expression.append("+(n/").append(i).append(")x(n/").append(i).append(')');
+        }
+        double expected = 0;
+        for (int i = 1; i <= 200; i++) expected += (6.0 / i) * (6.0 / i);
+        assertEquals(expected, engine.compileFunction(expression).applyAsDouble(6), 1e-9);
+    }
+
+    @Test
+    public void functions_areCachedByNormalizedText() {
+        DoubleUnaryOperator function = engine.compileFunction("n * 2");
+        assertSame(function, engine.compileFunction("nx2"));
+        assertNotSame(function, engine.compileFunction("n x 3"));
+    }
+
+    @Test
+    public void functions_keepSeparatedNumbersApart() {
+        assertEquals(24, engine.compileFunction("12xn").applyAsDouble(2), 0);
+        assertThrows(IllegalArgumentException.class, () -> engine.compileFunction("1 2xn"));
+        assertSame(engine.compileFunction("12xn"), engine.compileFunction("12 x n"));
+    }
+
+    @Test
+    public void variable_isOnlyAllowedInFunctions() {
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("n+1"));
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluateRational("n+1"));
+        assertThrows(IllegalArgumentException.class, () -> engine.compileFunction("2n"));
+        assertThrows(IllegalArgumentException.class, () -> engine.compileFunction("m+1"));
+    }
+}
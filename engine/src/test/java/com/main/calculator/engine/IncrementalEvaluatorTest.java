@@ -0,0 +1,109 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link IncrementalEvaluator}, run on the development machine (host).
+ */
+public class IncrementalEvaluatorTest {
+
+    private static final double NaN = Double.NaN;
+
+    private final IncrementalEvaluator evaluator = new IncrementalEvaluator(DivisionByZero.THROW);
+
+    @Test
+    public void preview_tracksEveryKeypress() {
+        String input = "12+3x4-(2";
+        double[] expected = {NaN, NaN, 12, 15, 15, 24, 24, 24, 22};
+        for (int i = 0; i < input.length(); i++) {
+            evaluator.append(input.charAt(i));
+            assertEquals(input.substring(0, i + 1), expected[i], evaluator.preview(), 0);
+        }
+    }
+
+    @Test
+    public void preview_matchesEngineForCompleteInput() {
+        Engine engine = new Engine();
+        String[] expressions = {"2+3x4", "(1+2)x(3+4)", "-5+3", "7%3-1/4", "2x-(3-1)", "1.5x.5"};
+        for (String expression : expressions) {
+            evaluator.set(expression);
+            assertEquals(expression, engine.evaluate(expression), evaluator.preview(), 0);
+        }
+    }
+
+    @Test
+    public void preview_closesGroupsAndIgnoresTrailingOperators() {
+        evaluator.set("2x(3+");
+        assertEquals(6, evaluator.preview(), 0);
+        evaluator.set("2x(3+4");
+        assertEquals(14, evaluator.preview(), 0);
+        evaluator.set("10-");
+        assertEquals(10, evaluator.preview(), 0);
+    }
+
+    @Test
+    public void invalidInput_hasNoPreview() {
+        String[] invalid = {"2+3)", "1.2.3", "2(", "x2", "1/0+2", "5"};
+        for (String input : invalid) {
+            evaluator.set(input);
+            assertFalse(input, evaluator.hasPreview());
+            assertTrue(input, Double.isNaN(evaluator.preview()));
+        }
+    }
+
+    @Test
+    public void longInput_isExtendedInPlace() {
+        evaluator.reset();
+        for (int i = 0; i < 100000; i++) {
+            evaluator.append('1');
+            evaluator.append('+');
+        }
+        evaluator.append('1');
+        assertEquals(100001, evaluator.preview(), 0);
+    }
+
+    @Test
+    public void delete_restoresPreviousState() {
+        evaluator.set("12+3x4");
+        evaluator.delete();
+        assertEquals(15, evaluator.preview(), 0); // "12+3x"
+        evaluator.delete();
+        evaluator.delete();
+        assertEquals(12, evaluator.preview(), 0); // "12+"
+        evaluator.append('5');
+        assertEquals(17, evaluator.preview(), 0);
+        assertEquals(4, evaluator.length());
+    }
+
+    @Test
+    public void delete_recoversFromInvalidInput() {
+        evaluator.set("1.5+2)");
+        assertFalse(evaluator.hasPreview());
+        evaluator.delete();
+        assertEquals(3.5, evaluator.preview(), 0);
+        evaluator.set("8/0");
+        evaluator.append('+');
+        assertFalse(evaluator.hasPreview());
+        evaluator.delete();
+        evaluator.delete();
+        evaluator.append('2');
+        assertEquals(4, evaluator.preview(), 0);
+    }
+
+    @Test
+    public void delete_matchesRetypingEveryPrefix() {
+        String input = "(1.25+3)x-2-10%4/(7-2.5)";
+        evaluator.set(input);
+        IncrementalEvaluator retyped = new IncrementalEvaluator(DivisionByZero.THROW);
+        for (int end = input.length(); end > 0; end--) {
+            retyped.set(input.substring(0, end));
+            assertEquals(input.substring(0, end), retyped.preview(), evaluator.preview(), 0);
+            evaluator.delete();
+        }
+        assertEquals(0, evaluator.length());
+        evaluator.delete(); // No input left, nothing happens
+        assertEquals(0, evaluator.length());
+    }
+}
@@ -0,0 +1,67 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LatencyHistogram} and {@link Metrics}, run on the development machine (host).
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValue() {
+        int previous = -1;
+        for (long nanos = 0; nanos < 100_000; nanos++) {
+            int bucket = LatencyHistogram.bucket(nanos);
+            assertTrue(bucket == previous || bucket == previous + 1);
+            assertTrue(nanos <= LatencyHistogram.upperBound(bucket));
+            previous = bucket;
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentiles_areWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 10_000; nanos++) histogram.record(nanos * 1000);
+        assertEquals(10_000, histogram.count());
+        assertEquals(10_000_000, histogram.max());
+        assertEquals(5_000_000, histogram.percentile(0.5), 5_000_000 / 8.0);
+        assertEquals(9_900_000, histogram.percentile(0.99), 9_900_000 / 8.0);
+        assertTrue(histogram.percentile(0.5) >= 5_000_000);
+        assertEquals(10_000_000, histogram.percentile(1));
+        assertEquals(0, new LatencyHistogram().percentile(0.5));
+    }
+
+    @Test
+    public void concurrentRecording_losesNothing() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) histogram.record(i);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(400_000, histogram.count());
+        assertEquals(99_999, histogram.max());
+    }
+
+    @Test
+    public void dump_isReadable() {
+        Metrics metrics = new Metrics();
+        metrics.recordEvaluation(1500, 3);
+        metrics.recordError();
+        StringWriter text = new StringWriter();
+        metrics.dump("  ", new PrintWriter(text, true));
+        assertEquals(String.format("  Engine metrics:%n"
+                + "    evaluations=1 errors=1 tokens=3 cacheHits=0%n"
+                + "    results hits=0 misses=0 evictions=0 hitRatio=0.00%n"
+                + "    latency p50=1.5us p99=1.5us max=1.5us%n"), text.toString());
+    }
+}
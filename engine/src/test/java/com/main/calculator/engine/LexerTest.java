@@ -0,0 +1,62 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Lexer}, run on the development machine (host).
+ */
+public class LexerTest {
+
+    private final Lexer lexer = new Lexer();
+
+    @Test
+    public void tokens_areRecognised() {
+        lexer.reset(" 12 x(3.5-.5)% 2 ");
+        assertEquals(Lexer.NUMBER, lexer.next());
+        assertEquals(12, lexer.number(), 0);
+        assertEquals(Lexer.OPERATOR, lexer.next());
+        assertEquals(Operator.MULTIPLY, lexer.operator());
+        assertEquals(Lexer.LEFT_PAREN, lexer.next());
+        assertEquals(Lexer.NUMBER, lexer.next());
+        assertEquals(3.5, lexer.number(), 0);
+        assertEquals(Lexer.OPERATOR, lexer.next());
+        assertEquals(Operator.SUBTRACT, lexer.operator());
+        assertEquals(Lexer.NUMBER, lexer.next());
+        assertEquals(0.5, lexer.number(), 0);
+        assertEquals(Lexer.RIGHT_PAREN, lexer.next());
+        assertEquals(Lexer.OPERATOR, lexer.next());
+        assertEquals(Operator.MODULO, lexer.operator());
+        assertEquals(Lexer.NUMBER, lexer.next());
+        assertEquals(Lexer.END, lexer.next());
+        assertEquals(17, lexer.start());
+    }
+
+    @Test
+    public void numbers_matchParseDouble() {
+        String[] literals = {
+                "0", "0.1", "0.30000000000000004", "123456789012345678901234567890",
+                "9007199254740993", "1.00000000000000000000000001", "0.0000000000000000000000001",
+                "922337203685477580.7", "2.", "000.5"
+        };
+        for (String literal : literals) {
+            assertNumber(literal);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder literal = new StringBuilder().append(random.nextInt(100000));
+            if (random.nextBoolean()) literal.append('.').append(random.nextInt(Integer.MAX_VALUE));
+            assertNumber(literal.toString());
+        }
+    }
+
+    private void assertNumber(String literal) {
+        lexer.reset(literal);
+        assertEquals(literal, Lexer.NUMBER, lexer.next());
+        assertEquals(literal, Double.parseDouble(literal), lexer.number(), 0);
+        assertEquals(literal, Lexer.END, lexer.next());
+    }
+}
@@ -0,0 +1,137 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Optimizer}, run on the development machine (host).
+ */
+public class OptimizerTest {
+
+    private final Parser parser = new Parser();
+    private final Optimizer optimizer = new Optimizer();
+
+    @Test
+    public void constantSubtrees_areFolded() {
+        Program program = optimizer.optimize(parser.parse("(1.07x12)+(1.07x12)x3"));
+        assertArrayEquals(new byte[]{Program.PUSH}, program.code);
+        assertEquals(1.07 * 12 + 1.07 * 12 * 3, program.constants[0], 0);
+        assertEquals(5136, program.unscaled[0]);
+        assertEquals(2, program.scales[0]);
+        assertEquals(1, program.frameSize);
+    }
+
+    @Test
+    public void repeatedSubexpressions_areComputedOnce() {
+        Program program = optimizer.optimize(parser.parse("(1/3)+(1/3)x3"));
+        assertArrayEquals(new byte[]{
+                Program.PUSH, Program.PUSH, Operator.DIVIDE, Program.STORE,
+                Program.LOAD, Program.PUSH, Operator.MULTIPLY, Operator.ADD
+        }, program.code);
+        assertArrayEquals(new int[]{0}, program.loads);
+        assertEquals(3, program.maxStack);
+        assertEquals(4, program.frameSize);
+        assertEquals(new Rational(4, 3), new RationalEvaluator(DivisionByZero.THROW).execute(program, Deadline.NONE));
+    }
+
+    @Test
+    public void unimprovablePrograms_areReturnedAsIs() {
+        Program program = parser.parse("1/2-3x(4%5)");
+        assertSame(program, optimizer.optimize(program));
+    }
+
+    @Test
+    public void doubleRounding_isKept() {
+        Program program = optimizer.optimize(parser.parse("0.1+0.2"));
+        assertEquals(0.30000000000000004, program.constants[0], 0);
+        assertEquals(3, program.unscaled[0]);
+        assertEquals(1, program.scales[0]);
+
+        // 0.1+0.2 folds to a different double than the literal 0.3, so neither replaces the other
+        program = optimizer.optimize(parser.parse("(0.1+0.2)-0.3+(0.1+0.2)/0.3"));
+        assertEquals(3, program.constants.length);
+        assertNotEquals(program.constants[0], program.constants[1], 0);
+        assertEquals(0, new DecimalEvaluator(DivisionByZero.THROW, MathContext.DECIMAL64)
+                .execute(program, Deadline.NONE).compareTo(BigDecimal.ONE));
+    }
+
+    @Test
+    public void divisionByZero_isNotFolded() {
+        Program program = optimizer.optimize(parser.parse("(1/(2-2))+(1/(2-2))"));
+        double[] stack = new double[program.frameSize];
+        try {
+            program.execute(stack, DivisionByZero.THROW);
+            fail("Expected division by zero");
+        } catch (ArithmeticException expected) {
+            // Expected
+        }
+        assertEquals(0, program.execute(stack, DivisionByZero.RETURN_ZERO), 0);
+    }
+
+    @Test
+    public void results_matchUnoptimizedProgram() {
+        String[] expressions = {
+                "2+3x-4", "(1/3)+(1/3)x3", "-(1/7)x-(1/7)+-(1/7)", "(0.1+0.2)x(0.1+0.2)-(0.1+0.2)",
+                "10.5%2+10.5%2", "-0x1", "0.000000001x0.000000001x0.000000001x0.000000001/3",
+                "9223372036854775807+1+(9223372036854775807+1)", "-9223372036854775807-1-1",
+                "123456789012345678901234567890x2+123456789012345678901234567890x2",
+                "(2/3-1/3)x(2/3-1/3)/(2/3-1/3)", "((((5))))-((((5))))"
+        };
+        for (String expression : expressions) {
+            assertSameResults(expression, DivisionByZero.THROW);
+            assertSameResults(expression, DivisionByZero.RETURN_ZERO);
+        }
+    }
+
+    @Test
+    public void foldedScalesPastALong_stayInLowestTerms() {
+        Program original = parser.parse("0.0000000001x0.0000000005");
+        Program folded = optimizer.optimize(original);
+        assertEquals(20, folded.scales[0]);
+        RationalEvaluator rationals = new RationalEvaluator(DivisionByZero.THROW);
+        assertEquals(rationals.execute(original, Deadline.NONE), rationals.execute(folded, Deadline.NONE));
+        assertEquals("1/20000000000000000000", new Engine().evaluateRational("0.0000000001x0.0000000005").toString());
+    }
+
+    @Test
+    public void sharedSubtrees_costOnePassEach() {
+        String expression = "1/3";
+        for (int i = 0; i < 16; i++) {
+            expression = "(" + expression + ")+(" + expression + ")";
+        }
+        Program program = optimizer.optimize(parser.parse(expression));
+        assertTrue(program.code.length < 64);
+        assertEquals(new Rational(65536, 3),
+                new RationalEvaluator(DivisionByZero.THROW).execute(program, Deadline.NONE));
+    }
+
+    @Test
+    public void deepNesting_doesNotOverflowTheCallStack() {
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) expression.append("(1/3)+(");
+        expression.append("1/3");
+        for (int i = 0; i < 100_000; i++) expression.append(')');
+        Program program = optimizer.optimize(parser.parse(expression));
+        assertEquals(100_001, program.execute(new double[program.frameSize], DivisionByZero.THROW) * 3, 1e-6);
+    }
+
+    private void assertSameResults(String expression, DivisionByZero divisionByZero) {
+        Program original = parser.parse(expression);
+        Program optimized = optimizer.optimize(original);
+        assertEquals(expression,
+                Double.doubleToLongBits(execute(original, divisionByZero)),
+                Double.doubleToLongBits(execute(optimized, divisionByZero)));
+        DecimalEvaluator decimals = new DecimalEvaluator(divisionByZero, MathContext.DECIMAL64);
+        assertEquals(expression, decimals.execute(original, Deadline.NONE), decimals.execute(optimized, Deadline.NONE));
+        RationalEvaluator rationals = new RationalEvaluator(divisionByZero);
+        assertEquals(expression, rationals.execute(original, Deadline.NONE), rationals.execute(optimized, Deadline.NONE));
+    }
+
+    private static double execute(Program program, DivisionByZero divisionByZero) {
+        return program.execute(new double[program.frameSize], divisionByZero);
+    }
+}
@@ -0,0 +1,33 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Parser}, run on the development machine (host).
+ */
+public class ParserTest {
+
+    private final Parser parser = new Parser();
+
+    @Test
+    public void postfixCode_isEmitted() {
+        Program program = parser.parse("2 + 3 x -4");
+        assertArrayEquals(new byte[]{
+                Program.PUSH, Program.PUSH, Program.PUSH, Operator.NEGATE, Operator.MULTIPLY, Operator.ADD
+        }, program.code);
+        assertArrayEquals(new double[]{2, 3, 4}, program.constants, 0);
+        assertEquals(3, program.maxStack);
+    }
+
+    @Test
+    public void parentheses_emitNoCode() {
+        Program program = parser.parse("((1 - 2)) - 3");
+        assertArrayEquals(new byte[]{
+                Program.PUSH, Program.PUSH, Operator.SUBTRACT, Program.PUSH, Operator.SUBTRACT
+        }, program.code);
+        assertEquals(2, program.maxStack);
+        assertEquals(-4, program.execute(new double[program.maxStack], DivisionByZero.THROW), 0);
+    }
+}
@@ -0,0 +1,83 @@
+package com.main.calculator.engine;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.math.MathContext;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Engine#evaluateRational}, run on the development machine (host).
+ */
+public class RationalEvaluatorTest {
+
+    private final Engine engine = new Engine();
+
+    @Test
+    public void divisionChains_areExact() {
+        assertRational("1", "1/3x3");
+        assertRational("1/3", "1/3");
+        assertRational("-7/6", "1/3-3/2");
+        assertRational("3/10", "0.1+0.2");
+        assertRational("7/2", "(1/2)/(1/7)");
+        assertRational("-2", "-(10/5)");
+        assertRational("1", "1/7+1/7+1/7+1/7+1/7+1/7+1/7");
+    }
+
+    @Test
+    public void modulo_truncatesLikeDouble() {
+        assertRational("1/2", "10.5%2");
+        assertRational("-1/2", "-10.5%2");
+        assertRational("1/6", "(1/2)%(1/3)");
+        assertRational("1", "7%-3");
+    }
+
+    @Test
+    public void overflow_promotesToBigInteger() {
+        assertRational("85070591730234615847396907784232501249", "9223372036854775807x9223372036854775807");
+        assertRational("1/85070591730234615847396907784232501249",
+                "1/9223372036854775807/9223372036854775807");
+        // Grows past long and comes back once the terms cancel
+        assertRational("2", "(9223372036854775807x4)/(9223372036854775807x2)");
+        assertRational("1/10000000000000000000", "0.0000000000000000001");
+        assertRational("100000000000000000000000001", "100000000000000000000000001");
+    }
+
+    @Test
+    public void bigLiterals_areInLowestTerms() {
+        assertRational("1/2", "0.50000000000000000000");
+        assertEquals(engine.evaluateRational("1/2"), engine.evaluateRational("0.50000000000000000000"));
+        assertRational("1/20000000000000000000", "0.00000000000000000005");
+        assertRational("0", "0.00000000000000000000");
+    }
+
+    @Test
+    public void longChains_stayExact() {
+        StringBuilder expression = new StringBuilder("1");
+        for (int i = 2; i <= 40; i++) expression.append("+1/").append(i);
+        Rational harmonic = engine.evaluateRational(expression);
+        assertEquals(4.278543038936377, harmonic.doubleValue(), 1e-15);
+        assertFalse(harmonic.isInteger());
+        assertEquals(BigInteger.ONE, harmonic.numerator().gcd(harmonic.denominator()));
+    }
+
+    @Test
+    public void divisionByZero_followsPolicy() {
+        assertThrows(ArithmeticException.class, () -> engine.evaluateRational("1/(1/3-1/3)"));
+        assertThrows(ArithmeticException.class, () -> engine.evaluateRational("1%0"));
+        assertEquals("5", new Engine(DivisionByZero.RETURN_ZERO).evaluateRational("5+1/0").toString());
+    }
+
+    @Test
+    public void conversions_areRounded() {
+        Rational third = engine.evaluateRational("1/3");
+        assertEquals("0.3333333333333333", DisplayFormat.format(third.toBigDecimal(MathContext.DECIMAL64)));
+        assertEquals(1.0 / 3, third.doubleValue(), 0);
+        assertEquals(new Rational(1, 3), third);
+    }
+
+    private void assertRational(String expected, String expression) {
+        assertEquals(expression, expected, engine.evaluateRational(expression).toString());
+    }
+}
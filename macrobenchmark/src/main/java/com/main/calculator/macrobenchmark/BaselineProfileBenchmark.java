@@ -0,0 +1,60 @@
+package com.main.calculator.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Compares cold start with no ahead-of-time compilation, as on a fresh
+ * install without a profile, against cold start with the shipped baseline
+ * profile applied.
+ *
+ * <p>Run with {@code ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest}
+ * on a physical device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public final MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void startupWithoutProfile() {
+        startup(new CompilationMode.None());
+    }
+
+    @Test
+    public void startupWithProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    private void startup(CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+                Calculator.PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+}
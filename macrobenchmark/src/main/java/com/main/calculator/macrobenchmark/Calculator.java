@@ -0,0 +1,33 @@
+package com.main.calculator.macrobenchmark;
+
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/**
+ * Drives the calculator's keypad through UiAutomator, finding buttons by
+ * their {@code btn_} resource ids.
+ */
+final class Calculator {
+
+    static final String PACKAGE_NAME = "com.main.calculator";
+
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    private Calculator() {
+    }
+
+    /**
+     * Taps a button and waits for the UI to settle.
+     *
+     * @param device The device to drive.
+     * @param id     The button's resource id without the package, such as {@code btn_7}.
+     */
+    static void tap(UiDevice device, String id) {
+        UiObject2 button = device.wait(Until.findObject(By.res(PACKAGE_NAME, id)), TIMEOUT_MILLIS);
+        if (button == null) throw new IllegalStateException("Button not found: " + id);
+        button.click();
+        device.waitForIdle();
+    }
+}
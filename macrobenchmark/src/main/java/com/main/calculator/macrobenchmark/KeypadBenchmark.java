@@ -0,0 +1,57 @@
+package com.main.calculator.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.uiautomator.UiDevice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Measures frame times while typing an expression on {@code MainActivity}
+ * and pressing {@code =}, so keypress-to-frame latency regressions show up.
+ * Only the taps are traced; the activity is started before each iteration.
+ *
+ * <p>Run with {@code ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest}
+ * on a physical device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class KeypadBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    // 12.5 + 7 * 3 / 4 - 9 =
+    private static final String[] KEYS = {
+            "btn_1", "btn_2", "btn_dot", "btn_5", "btn_add", "btn_7", "btn_multiply", "btn_3",
+            "btn_divide", "btn_4", "btn_subtract", "btn_9", "btn_equals", "btn_clear"
+    };
+
+    @Rule
+    public final MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void typeExpression() {
+        benchmarkRule.measureRepeated(
+                Calculator.PACKAGE_NAME,
+                Collections.singletonList(new FrameTimingMetric()),
+                new CompilationMode.Partial(),
+                null,
+                ITERATIONS,
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    UiDevice device = scope.getDevice();
+                    for (String key : KEYS) Calculator.tap(device, key);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,64 @@
+package com.main.calculator.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Measures the time to first frame of {@code MainActivity} for cold, warm
+ * and hot starts.
+ *
+ * <p>Run with {@code ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest}
+ * on a physical device.
+ */
+@RunWith(Parameterized.class)
+public class StartupBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> startupModes() {
+        List<Object[]> modes = new ArrayList<>();
+        for (StartupMode mode : StartupMode.values()) modes.add(new Object[]{mode});
+        return modes;
+    }
+
+    @Rule
+    public final MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private final StartupMode startupMode;
+
+    public StartupBenchmark(StartupMode startupMode) {
+        this.startupMode = startupMode;
+    }
+
+    @Test
+    public void startup() {
+        benchmarkRule.measureRepeated(
+                Calculator.PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                new CompilationMode.Partial(),
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,29 @@
+plugins {
+    alias(libs.plugins.android.library)
+    alias(libs.plugins.androidx.benchmark)
+}
+
+android {
+    namespace = "com.main.calculator.microbenchmark"
+    compileSdk = 35
+
+    defaultConfig {
+        minSdk = 24
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    // Benchmarks run against a non-debuggable build so ART compiles them as it would in the field
+    testBuildType = "release"
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+}
+
+dependencies {
+
+    androidTestImplementation(project(":engine"))
+    androidTestImplementation(libs.benchmark.junit4)
+    androidTestImplementation(libs.ext.junit)
+}
@@ -0,0 +1,99 @@
+package com.main.calculator.engine;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Times the engine's hot paths on ART, on a device or emulator. Each test
+ * reports the time and the number of allocations per operation.
+ *
+ * <p>Run with {@code ./gradlew :microbenchmark:connectedReleaseAndroidTest}.
+ * Results are in {@code microbenchmark/build/outputs/connected_android_test_additional_output}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EngineMicrobenchmark {
+
+    private static final String EXPRESSION = "(12.5+3)x4-7/2%3--1.25+1/3x3"; // As typed on MainAppII
+    private static final MathContext PRECISION = MathContext.DECIMAL64;        // Same as MainAppII
+
+    @Rule
+    public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private double sink; // Keeps ART from discarding the work
+
+    @Test
+    public void evaluate() {
+        Engine engine = new Engine();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            sink += engine.evaluate(EXPRESSION);
+        }
+    }
+
+    @Test
+    public void evaluateExpression() {
+        // The full path behind MainAppII's = key: exact evaluation, rounding and formatting
+        Engine engine = new Engine(DivisionByZero.THROW, PRECISION);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            sink += DisplayFormat.format(engine.evaluateRational(EXPRESSION).toBigDecimal(PRECISION)).length();
+        }
+    }
+
+    @Test
+    public void compile() {
+        Parser parser = new Parser();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            sink += parser.parse(EXPRESSION).maxStack;
+        }
+    }
+
+    @Test
+    public void execute() {
+        Program program = new Parser().parse(EXPRESSION);
+        double[] stack = new double[program.frameSize];
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            sink += program.execute(stack, DivisionByZero.THROW);
+        }
+    }
+
+    @Test
+    public void operatorDispatch() {
+        // One application of each binary operator per iteration
+        BenchmarkState state = benchmarkRule.getState();
+        double value = 1.5;
+        while (state.keepRunning()) {
+            for (byte operator = Operator.ADD; operator <= Operator.MODULO; operator++) {
+                value = Operator.apply(operator, value, 1.25, DivisionByZero.THROW);
+            }
+        }
+        sink += value;
+    }
+
+    @Test
+    public void formatDouble() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            sink += DisplayFormat.format(0.1 + 0.2, PRECISION).length();
+        }
+    }
+
+    @Test
+    public void formatDecimal() {
+        BigDecimal value = new BigDecimal("1234.5000");
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            sink += DisplayFormat.format(value).length();
+        }
+    }
+}
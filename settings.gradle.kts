@@ -21,3 +21,8 @@ dependencyResolutionManagement {
 
 rootProject.name = "calculator"
 include(":app")
+include(":engine")
+include(":cli")
+include(":microbenchmark")
+include(":macrobenchmark")
+include(":baselineprofile")